@@ -0,0 +1,116 @@
+package com.amongthesloths.trophybot.benchmark;
+
+import com.amongthesloths.trophybot.ConnectionPool;
+import com.amongthesloths.trophybot.DatabaseManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.SplittableRandom;
+
+/**
+ * Seeds a SQLite file with synthetic trophies and awards. The seeded file is kept as a template next to the
+ * benchmark directory and copied for every trial, so write benchmarks always start from the same state.
+ */
+final class BenchmarkDatabase {
+    private static final Logger logger = LoggerFactory.getLogger(BenchmarkDatabase.class);
+    static final String GUILD_ID = "100000000000000000";
+    private static final long USER_ID_BASE = 100_000_000_000_000_000L;
+    private static final int INSERT_BATCH_SIZE = 10_000;
+
+    private BenchmarkDatabase() {
+    }
+
+    static DatabaseManager open(int trophies, int awards, int users, int readers) throws IOException, SQLException {
+        Path directory = Path.of(System.getProperty("trophybot.bench.dir", "target/jmh-db"));
+        Files.createDirectories(directory);
+        Path template = directory.resolve(String.format("template-%d-%d-%d.db", trophies, awards, users));
+        if (!Files.exists(template)) {
+            seed(template, trophies, awards, users);
+        }
+
+        Path working = directory.resolve("working-" + ProcessHandle.current().pid() + ".db");
+        Files.copy(template, working, StandardCopyOption.REPLACE_EXISTING);
+        Files.deleteIfExists(Path.of(working + "-wal"));
+        Files.deleteIfExists(Path.of(working + "-shm"));
+        working.toFile().deleteOnExit();
+
+        ConnectionPool pool = new ConnectionPool("jdbc:sqlite:" + working, "", "", readers, 30_000);
+        return new DatabaseManager(pool);
+    }
+
+    static long userId(int index) {
+        return USER_ID_BASE + index;
+    }
+
+    private static void seed(Path template, int trophies, int awards, int users) throws IOException, SQLException {
+        logger.info("Seeding benchmark database with {} trophies, {} awards and {} users", trophies, awards, users);
+        Path seeding = Path.of(template + ".seeding");
+        Files.deleteIfExists(seeding);
+
+        // Schema über DatabaseManager anlegen, damit der Benchmark immer das aktuelle Schema nutzt
+        new DatabaseManager(new ConnectionPool("jdbc:sqlite:" + seeding, "", "", 0, 30_000)).close();
+
+        try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + seeding)) {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("PRAGMA synchronous = OFF");
+            }
+            connection.setAutoCommit(false);
+            Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+
+            try (PreparedStatement insert = connection.prepareStatement(
+                    "INSERT INTO trophies (guild_id, name, description, emoji, created_at, created_by) VALUES (?, ?, ?, ?, ?, ?)")) {
+                for (int i = 1; i <= trophies; i++) {
+                    insert.setString(1, GUILD_ID);
+                    insert.setString(2, "Trophy " + i);
+                    insert.setString(3, "Synthetic benchmark trophy number " + i);
+                    insert.setString(4, "🏆");
+                    insert.setTimestamp(5, now);
+                    insert.setString(6, String.valueOf(userId(0)));
+                    insert.addBatch();
+                    if (i % INSERT_BATCH_SIZE == 0) {
+                        insert.executeBatch();
+                    }
+                }
+                insert.executeBatch();
+            }
+
+            SplittableRandom random = new SplittableRandom(42);
+            // Zufällige Doppelvergaben verwirft der Unique-Index, es entstehen also etwas weniger Vergaben
+            try (PreparedStatement insert = connection.prepareStatement(
+                    "INSERT OR IGNORE INTO trophy_awards (guild_id, user_id, trophy_id, awarded_by, awarded_at) VALUES (?, ?, ?, ?, ?)")) {
+                for (int i = 1; i <= awards; i++) {
+                    insert.setString(1, GUILD_ID);
+                    insert.setString(2, String.valueOf(userId(random.nextInt(users))));
+                    insert.setInt(3, 1 + random.nextInt(trophies));
+                    insert.setString(4, String.valueOf(userId(0)));
+                    insert.setTimestamp(5, now);
+                    insert.addBatch();
+                    if (i % INSERT_BATCH_SIZE == 0) {
+                        insert.executeBatch();
+                    }
+                }
+                insert.executeBatch();
+            }
+            connection.commit();
+        }
+
+        // Leaderboard-Zählung einmal aus den Vergaben aufbauen
+        DatabaseManager databaseManager = new DatabaseManager(new ConnectionPool("jdbc:sqlite:" + seeding, "", "", 0, 30_000));
+        databaseManager.rebuildLeaderboard();
+        databaseManager.close();
+
+        Files.move(seeding, template, StandardCopyOption.REPLACE_EXISTING);
+        logger.info("Benchmark database seeded: {}", template);
+    }
+}
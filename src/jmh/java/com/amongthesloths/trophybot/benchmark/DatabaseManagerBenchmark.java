@@ -0,0 +1,148 @@
+package com.amongthesloths.trophybot.benchmark;
+
+import com.amongthesloths.trophybot.DatabaseManager;
+import com.amongthesloths.trophybot.TrophyStore;
+import com.amongthesloths.trophybot.models.Trophy;
+import com.amongthesloths.trophybot.models.UserTrophy;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static com.amongthesloths.trophybot.benchmark.BenchmarkDatabase.GUILD_ID;
+
+/**
+ * Benchmarks for the DatabaseManager hot paths against a seeded SQLite file.
+ * Sizes can be changed on the command line, e.g. {@code -p trophies=1000 -p awards=100000 -p users=10000}.
+ * The *Contended benchmarks run the same operation on 8 threads, the mixed group runs readers against a writer.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+public class DatabaseManagerBenchmark {
+    @Param("10000")
+    private int trophies;
+
+    @Param("5000000")
+    private int awards;
+
+    @Param("500000")
+    private int users;
+
+    @Param("4")
+    private int readers;
+
+    private DatabaseManager databaseManager;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        databaseManager = BenchmarkDatabase.open(trophies, awards, users, readers);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        databaseManager.close();
+    }
+
+    private int randomTrophyId() {
+        return 1 + ThreadLocalRandom.current().nextInt(trophies);
+    }
+
+    private String randomUserId() {
+        return String.valueOf(BenchmarkDatabase.userId(ThreadLocalRandom.current().nextInt(users)));
+    }
+
+    @Benchmark
+    public Trophy createTrophy() throws Exception {
+        return databaseManager.createTrophy(GUILD_ID, "Benchmark", "Created by the benchmark", "⭐", randomUserId());
+    }
+
+    @Benchmark
+    public void awardTrophy() throws Exception {
+        databaseManager.awardTrophy(GUILD_ID, randomUserId(), randomTrophyId(), randomUserId());
+    }
+
+    @Benchmark
+    public List<UserTrophy> getUserTrophies() throws Exception {
+        return databaseManager.getUserTrophies(GUILD_ID, randomUserId());
+    }
+
+    @Benchmark
+    public List<UserTrophy> getUsersWithTrophy() throws Exception {
+        return databaseManager.getUsersWithTrophy(GUILD_ID, randomTrophyId());
+    }
+
+    @Benchmark
+    public void streamTrophyWinners(Blackhole blackhole) throws Exception {
+        databaseManager.streamTrophyWinners(GUILD_ID, randomTrophyId(),
+            (awardId, userId, trophy, awardedAt, awardedBy) -> blackhole.consume(userId));
+    }
+
+    @Benchmark
+    public List<TrophyStore.UserTrophyCount> getLeaderboard() throws Exception {
+        return databaseManager.getLeaderboard(GUILD_ID, 10);
+    }
+
+    @Benchmark
+    public List<Trophy> getAllTrophies() throws Exception {
+        return databaseManager.getAllTrophies(GUILD_ID);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void awardTrophyContended() throws Exception {
+        awardTrophy();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public List<UserTrophy> getUserTrophiesContended() throws Exception {
+        return getUserTrophies();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public List<UserTrophy> getUsersWithTrophyContended() throws Exception {
+        return getUsersWithTrophy();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public List<TrophyStore.UserTrophyCount> getLeaderboardContended() throws Exception {
+        return getLeaderboard();
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(6)
+    public List<UserTrophy> mixedRead() throws Exception {
+        return getUsersWithTrophy();
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(2)
+    public void mixedWrite() throws Exception {
+        awardTrophy();
+    }
+}
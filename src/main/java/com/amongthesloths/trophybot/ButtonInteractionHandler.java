@@ -1,21 +1,33 @@
 package com.amongthesloths.trophybot;
 
-import com.amongthesloths.trophybot.models.UserTrophy;
-import java.awt.Color;
 import java.sql.SQLException;
-import java.time.Instant;
-import java.util.List;
-import net.dv8tion.jda.api.EmbedBuilder;
+import net.dv8tion.jda.api.entities.MessageEmbed;
 import net.dv8tion.jda.api.events.interaction.component.ButtonInteractionEvent;
 import net.dv8tion.jda.api.hooks.ListenerAdapter;
+import net.dv8tion.jda.api.interactions.components.ActionRow;
 import net.dv8tion.jda.api.interactions.components.buttons.Button;
+import net.dv8tion.jda.api.utils.messages.MessageEditData;
 import com.amongthesloths.trophybot.models.Trophy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 public class ButtonInteractionHandler extends ListenerAdapter {
-	private final DatabaseManager dbManager;
-
-	public ButtonInteractionHandler(DatabaseManager dbManager) {
+	private static final Logger logger = LoggerFactory.getLogger(ButtonInteractionHandler.class);
+	private static final Metrics.Histogram BUTTON_DURATION = Metrics.histogram(
+			"trophybot_button_duration_seconds", "Time from receiving a button click until its handler finished", "action");
+	private static final Metrics.Counter BUTTON_ERRORS = Metrics.counter(
+			"trophybot_button_errors_total", "Button clicks that failed or were rejected", "action", "reason");
+	private final TrophyStore dbManager;
+	private final ViewRenderer views;
+	private final InteractionExecutor executor;
+	private final ReplyScheduler replies;
+
+	public ButtonInteractionHandler(TrophyStore dbManager, ViewRenderer views, InteractionExecutor executor,
+			ReplyScheduler replies) {
 		this.dbManager = dbManager;
+		this.views = views;
+		this.executor = executor;
+		this.replies = replies;
 	}
 
 	@Override
@@ -29,102 +41,147 @@ public class ButtonInteractionHandler extends ListenerAdapter {
 
 		switch (action) {
 			case "trophy_detail":
-				showTrophyDetail(event, Integer.parseInt(data[1]));
+				replies.respond(event.deferReply());
+				runAsync(event, action, () -> showTrophyDetail(event, Integer.parseInt(data[1])));
 				break;
 			case "trophy_winners":
-				showTrophyWinners(event, Integer.parseInt(data[1]));
+				if (data.length == 5) {
+					replies.respond(event.deferEdit());
+					runAsync(event, action, () -> showTrophyWinners(event, Integer.parseInt(data[1]), PageRequest.parse(data, 2)));
+				} else {
+					replies.respond(event.deferReply());
+					runAsync(event, action, () -> showTrophyWinners(event, Integer.parseInt(data[1]), PageRequest.FIRST));
+				}
 				break;
 			case "trophy_list":
-				handleTrophyListPagination(event, Integer.parseInt(data[1]));
+				replies.respond(event.deferEdit());
+				PageRequest listRequest = data.length == 4 ? PageRequest.parse(data, 1) : PageRequest.FIRST;
+				runAsync(event, action, () -> handleTrophyListPagination(event, listRequest));
+				break;
+			case "trophy_profile":
+				if (data.length == 5) {
+					replies.respond(event.deferEdit());
+					runAsync(event, action, () -> handleProfilePagination(event, data[1], PageRequest.parse(data, 2)));
+				}
 				break;
 		}
 	}
 
+	private void runAsync(ButtonInteractionEvent event, String action, Runnable task) {
+		long start = System.nanoTime();
+		String guildId = event.getGuild() != null ? event.getGuild().getId() : "direct";
+		executor.submit(guildId, () -> {
+			try {
+				task.run();
+			} catch (RuntimeException e) {
+				BUTTON_ERRORS.inc(action, "exception");
+				logger.error("Failed to handle button {}", event.getComponentId(), e);
+				replies.followUp(event.getHook().sendMessage("Ein unerwarteter Fehler ist aufgetreten.").setEphemeral(true));
+			} finally {
+				BUTTON_DURATION.observeSince(start, action);
+			}
+		}, () -> {
+			BUTTON_ERRORS.inc(action, "rejected");
+			replies.followUp(event.getHook()
+					.sendMessage("Der Bot ist gerade ausgelastet, bitte versuche es gleich noch einmal.")
+					.setEphemeral(true));
+		});
+	}
+
 	private void showTrophyDetail(ButtonInteractionEvent event, int trophyId) {
 		try {
-			Trophy trophy = dbManager.getTrophyById(trophyId);
+			Trophy trophy = dbManager.getTrophyById(guildId(event), trophyId);
 			if (trophy == null) {
-				event.reply("Trophäe nicht gefunden!").setEphemeral(true).queue();
+				replies.edit(event.getHook(), hook -> hook.editOriginal("Trophäe nicht gefunden!"));
 				return;
 			}
 
-			event
-					.replyEmbeds(trophy.createEmbed())
-					.addActionRow(
+			MessageEmbed embed = views.trophy(trophy);
+			replies.edit(event.getHook(), hook -> hook
+					.editOriginalEmbeds(embed)
+					.setComponents(ActionRow.of(
 							Button.primary("trophy_detail:" + trophyId, "Details"),
-							Button.secondary("trophy_winners:" + trophyId, "Gewinner anzeigen"))
-					.queue();
+							Button.secondary("trophy_winners:" + trophyId, "Gewinner anzeigen"))));
 		} catch (SQLException e) {
-			event.reply("Fehler beim Abrufen der Trophäe: " + e.getMessage()).setEphemeral(true).queue();
+			replies.edit(event.getHook(), hook -> hook.editOriginal("Fehler beim Abrufen der Trophäe: " + e.getMessage()));
 		}
 	}
 
-	private void showTrophyWinners(ButtonInteractionEvent event, int trophyId) {
+	private void showTrophyWinners(ButtonInteractionEvent event, int trophyId, PageRequest request) {
 		try {
-			Trophy trophy = dbManager.getTrophyById(trophyId);
+			Trophy trophy = dbManager.getTrophyById(guildId(event), trophyId);
 			if (trophy == null) {
-				event.reply("Trophäe nicht gefunden!").setEphemeral(true).queue();
+				replies.edit(event.getHook(), hook -> hook.editOriginal("Trophäe nicht gefunden!"));
 				return;
 			}
 
-			List<UserTrophy> winners = dbManager.getUsersWithTrophy(trophyId);
-			EmbedBuilder eb = new EmbedBuilder()
-					.setTitle("Gewinner der Trophäe: " + trophy.getName())
-					.setColor(Color.YELLOW)
-					.setThumbnail(trophy.getEmoji())
-					.setTimestamp(Instant.now());
-
-			if (winners.isEmpty()) {
-				eb.setDescription("Diese Trophäe wurde noch an niemanden vergeben.");
+			MessageEditData winners = views.winners(trophy, request.page, request.forward, request.cursor);
+			if (request == PageRequest.FIRST) {
+				replies.edit(event.getHook(), hook -> hook.editOriginal(winners));
 			} else {
-				StringBuilder winnersList = new StringBuilder();
-				for (UserTrophy winner : winners) {
-					winnersList.append("<@").append(winner.getUserId()).append(">\n");
-				}
-				eb.setDescription("Folgende Spieler haben diese Trophäe erhalten:\n\n" + winnersList);
+				// Blättern bearbeitet die angeklickte Nachricht, schnelle Klicks werden zusammengefasst
+				replies.editMessage(event.getHook(), event.getMessageId(), hook -> hook.editOriginal(winners));
 			}
-
-			event
-					.replyEmbeds(eb.build())
-					.addActionRow(Button.primary("trophy_detail:" + trophyId, "Zurück zu Details"))
-					.queue();
 		} catch (SQLException e) {
-			event.reply("Fehler beim Abrufen der Gewinner: " + e.getMessage()).setEphemeral(true).queue();
+			replies.edit(event.getHook(), hook -> hook.editOriginal("Fehler beim Abrufen der Gewinner: " + e.getMessage()));
 		}
 	}
 
-	private void handleTrophyListPagination(ButtonInteractionEvent event, int page) {
+	private void handleTrophyListPagination(ButtonInteractionEvent event, PageRequest request) {
 		try {
-			List<Trophy> trophies = dbManager.getAllTrophies();
-			if (trophies.isEmpty()) {
-				event.reply("Es gibt noch keine Trophäen!").queue();
+			MessageEditData list = views.trophyList(guildId(event), request.page, request.forward, (int) request.cursor);
+			if (list == null) {
+				replies.followUp(event.getHook().sendMessage("Es gibt noch keine Trophäen!"));
 				return;
 			}
 
-			int itemsPerPage = 10;
-			int totalPages = (int) Math.ceil((double) trophies.size() / itemsPerPage);
-			int startIndex = (page - 1) * itemsPerPage;
-			int endIndex = Math.min(startIndex + itemsPerPage, trophies.size());
-
-			EmbedBuilder eb = new EmbedBuilder()
-					.setTitle("Verfügbare Trophäen (Seite " + page + "/" + totalPages + ")")
-					.setColor(Color.YELLOW)
-					.setTimestamp(Instant.now());
+			replies.editMessage(event.getHook(), event.getMessageId(), hook -> hook.editOriginal(list));
+		} catch (SQLException e) {
+			replies.followUp(event.getHook()
+					.sendMessage("Fehler beim Abrufen der Trophäen: " + e.getMessage())
+					.setEphemeral(true));
+		}
+	}
 
-			for (int i = startIndex; i < endIndex; i++) {
-				Trophy trophy = trophies.get(i);
-				eb.addField(trophy.getName(), trophy.getDescription(), false);
-			}
+	private void handleProfilePagination(ButtonInteractionEvent event, String userId, PageRequest request) {
+		try {
+			// Titel und Avatar aus der bestehenden Nachricht übernehmen, statt den Benutzer erneut abzufragen
+			MessageEmbed current = event.getMessage().getEmbeds().get(0);
+			String thumbnail = current.getThumbnail() != null ? current.getThumbnail().getUrl() : null;
 
-			event
-					.editMessageEmbeds(eb.build())
-					.setActionRow(
-							Button.primary("trophy_list:" + (page - 1), "◀️ Zurück").withDisabled(page <= 1),
-							Button.primary("trophy_list:" + (page + 1), "Weiter ▶️")
-									.withDisabled(page >= totalPages))
-					.queue();
+			MessageEditData profile = views.profile(
+					guildId(event), userId, current.getTitle(), thumbnail, request.page, request.forward, request.cursor);
+			replies.editMessage(event.getHook(), event.getMessageId(), hook -> hook.editOriginal(profile));
 		} catch (SQLException e) {
-			event.reply("Fehler beim Abrufen der Trophäen: " + e.getMessage()).setEphemeral(true).queue();
+			replies.followUp(event.getHook()
+					.sendMessage("Fehler beim Abrufen des Profils: " + e.getMessage())
+					.setEphemeral(true));
+		}
+	}
+
+	private static String guildId(ButtonInteractionEvent event) {
+		return event.getGuild() != null ? event.getGuild().getId() : "";
+	}
+
+	// Seitenangabe aus der Button-ID: <seite>:<p|n>:<cursor>
+	private static class PageRequest {
+		private static final PageRequest FIRST = new PageRequest(1, true, 0);
+
+		private final int page;
+		private final boolean forward;
+		private final long cursor;
+
+		private PageRequest(int page, boolean forward, long cursor) {
+			this.page = page;
+			this.forward = forward;
+			this.cursor = cursor;
+		}
+
+		private static PageRequest parse(String[] data, int offset) {
+			return new PageRequest(
+					Integer.parseInt(data[offset]),
+					!"p".equals(data[offset + 1]),
+					Long.parseLong(data[offset + 2]));
 		}
 	}
 }
@@ -1,37 +1,91 @@
 package com.amongthesloths.trophybot;
 
 import com.amongthesloths.trophybot.models.Trophy;
-import com.amongthesloths.trophybot.models.UserTrophy;
 import net.dv8tion.jda.api.EmbedBuilder;
 import net.dv8tion.jda.api.entities.Member;
 import net.dv8tion.jda.api.entities.MessageEmbed;
+import net.dv8tion.jda.api.entities.Role;
 import net.dv8tion.jda.api.entities.User;
+import net.dv8tion.jda.api.events.interaction.command.CommandAutoCompleteInteractionEvent;
 import net.dv8tion.jda.api.events.interaction.command.SlashCommandInteractionEvent;
 import net.dv8tion.jda.api.hooks.ListenerAdapter;
+import net.dv8tion.jda.api.interactions.commands.Command;
 import net.dv8tion.jda.api.interactions.commands.OptionMapping;
 import net.dv8tion.jda.api.interactions.commands.OptionType;
 import net.dv8tion.jda.api.interactions.commands.build.OptionData;
+import net.dv8tion.jda.api.interactions.components.ActionRow;
 import net.dv8tion.jda.api.interactions.components.buttons.Button;
-import net.dv8tion.jda.api.interactions.components.buttons.ButtonStyle;
 import net.dv8tion.jda.api.Permission;
+import net.dv8tion.jda.api.utils.messages.MessageEditData;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.awt.Color;
 import java.sql.SQLException;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 public class CommandHandler extends ListenerAdapter {
-    private final DatabaseManager dbManager;
+    private static final Pattern USER_ID_PATTERN = Pattern.compile("\\d{17,20}");
+    private static final int MEMBER_CHUNK_SIZE = 100;
+    private final TrophyStore dbManager;
+    private final ViewRenderer views;
+    private final InteractionExecutor executor;
+    private final DatabaseMaintenance maintenance;
+    private final ReplyScheduler replies;
     private static final Logger logger = LoggerFactory.getLogger(CommandHandler.class);
+    private static final Metrics.Histogram COMMAND_DURATION = Metrics.histogram(
+        "trophybot_command_duration_seconds", "Time from receiving a slash command until its handler finished", "command", "subcommand");
+    private static final Metrics.Counter COMMAND_ERRORS = Metrics.counter(
+        "trophybot_command_errors_total", "Slash commands that failed or were rejected", "command", "subcommand", "reason");
 
-    public CommandHandler(DatabaseManager dbManager) {
+    public CommandHandler(TrophyStore dbManager, ViewRenderer views, InteractionExecutor executor,
+                          DatabaseMaintenance maintenance, ReplyScheduler replies) {
         this.dbManager = dbManager;
+        this.views = views;
+        this.executor = executor;
+        this.maintenance = maintenance;
+        this.replies = replies;
+    }
+
+    @Override
+    public void onCommandAutoCompleteInteraction(CommandAutoCompleteInteractionEvent event) {
+        if (!"trophy_id".equals(event.getFocusedOption().getName())) {
+            return;
+        }
+        if (event.getGuild() == null) {
+            replies.respond(event.replyChoices());
+            return;
+        }
+
+        // Direkt auf dem Event-Thread beantworten, der Suchindex liegt komplett im Speicher
+        List<Command.Choice> choices = new ArrayList<>();
+        for (Trophy trophy : dbManager.searchTrophies(event.getGuild().getId(), event.getFocusedOption().getValue(),
+                OptionData.MAX_CHOICES)) {
+            String label = String.format("%s %s (ID: %d)", trophy.getEmoji(), trophy.getName(), trophy.getId());
+            if (label.length() > OptionData.MAX_CHOICE_NAME_LENGTH) {
+                label = label.substring(0, OptionData.MAX_CHOICE_NAME_LENGTH - 1) + "…";
+            }
+            choices.add(new Command.Choice(label, trophy.getId()));
+        }
+        replies.respond(event.replyChoices(choices));
     }
 
     @Override
     public void onSlashCommandInteraction(SlashCommandInteractionEvent event) {
+        // Trophäen und Ranglisten gehören immer zu einem Server
+        if (event.getGuild() == null) {
+            replies.respond(event.reply("Dieser Befehl ist nur auf Servern verfügbar.").setEphemeral(true));
+            return;
+        }
+
         switch (event.getName()) {
             case "trophy":
                 handleTrophyCommand(event);
@@ -49,36 +103,43 @@ public class CommandHandler extends ListenerAdapter {
         switch (subcommand) {
             case "create":
                 if (!hasPermission(event.getMember(), Permission.ADMINISTRATOR)) {
-                    event.reply("Du hast keine Berechtigung, Trophäen zu erstellen!").setEphemeral(true).queue();
+                    replies.respond(event.reply("Du hast keine Berechtigung, Trophäen zu erstellen!").setEphemeral(true));
                     return;
                 }
-                createTrophy(event);
+                runDeferred(event, () -> createTrophy(event));
                 break;
             case "award":
                 if (!hasPermission(event.getMember(), Permission.ADMINISTRATOR)) {
-                    event.reply("Du hast keine Berechtigung, Trophäen zu vergeben!").setEphemeral(true).queue();
+                    replies.respond(event.reply("Du hast keine Berechtigung, Trophäen zu vergeben!").setEphemeral(true));
                     return;
                 }
-                awardTrophy(event);
+                runDeferred(event, () -> awardTrophy(event));
+                break;
+            case "award-bulk":
+                if (!hasPermission(event.getMember(), Permission.ADMINISTRATOR)) {
+                    replies.respond(event.reply("Du hast keine Berechtigung, Trophäen zu vergeben!").setEphemeral(true));
+                    return;
+                }
+                runDeferred(event, () -> awardTrophyBulk(event));
                 break;
             case "remove":
                 if (!hasPermission(event.getMember(), Permission.ADMINISTRATOR)) {
-                    event.reply("Du hast keine Berechtigung, Trophäen zu vergeben!").setEphemeral(true).queue();
+                    replies.respond(event.reply("Du hast keine Berechtigung, Trophäen zu vergeben!").setEphemeral(true));
                     return;
                 }
-                removeTrophy(event);
+                runDeferred(event, () -> removeTrophy(event));
                 break;
             case "list":
-                listTrophies(event);
+                runDeferred(event, () -> listTrophies(event));
                 break;
             case "show":
-                showTrophy(event);
+                runDeferred(event, () -> showTrophy(event));
                 break;
             case "profile":
-                showProfile(event);
+                runDeferred(event, () -> showProfile(event));
                 break;
             case "leaderboard":
-                showLeaderboard(event);
+                runDeferred(event, () -> showLeaderboard(event));
                 break;
         }
     }
@@ -90,14 +151,12 @@ public class CommandHandler extends ListenerAdapter {
         String createdBy = event.getUser().getId();
 
         try {
-            Trophy trophy = dbManager.createTrophy(name, description, emoji, createdBy);
-            event.reply("Trophäe erfolgreich erstellt!")
-                .addEmbeds(trophy.createEmbed())
-                .queue();
+            Trophy trophy = dbManager.createTrophy(guildId(event), name, description, emoji, createdBy);
+            MessageEmbed embed = views.trophy(trophy);
+            replies.edit(event.getHook(), hook -> hook.editOriginal("Trophäe erfolgreich erstellt!")
+                .setEmbeds(embed));
         } catch (SQLException e) {
-            event.reply("Fehler beim Erstellen der Trophäe: " + e.getMessage())
-                .setEphemeral(true)
-                .queue();
+            replies.edit(event.getHook(), hook -> hook.editOriginal("Fehler beim Erstellen der Trophäe: " + e.getMessage()));
         }
     }
 
@@ -106,62 +165,135 @@ public class CommandHandler extends ListenerAdapter {
         int trophyId = event.getOption("trophy_id", OptionMapping::getAsInt);
 
         try {
-            Trophy trophy = dbManager.getTrophyById(trophyId);
+            Trophy trophy = dbManager.getTrophyById(guildId(event), trophyId);
             if (trophy == null) {
-                event.reply("Trophäe nicht gefunden!").setEphemeral(true).queue();
+                replies.edit(event.getHook(), hook -> hook.editOriginal("Trophäe nicht gefunden!"));
                 return;
             }
 
-            dbManager.awardTrophy(
+            // Die Interaktions-ID macht wiederholt zugestellte Interaktionen idempotent
+            boolean awarded = dbManager.awardTrophy(
+                guildId(event),
                 user.getId(),
                 trophyId,
-                event.getUser().getId()
+                event.getUser().getId(),
+                event.getId()
             );
 
-            event.reply("Trophäe erfolgreich vergeben!")
-                .addEmbeds(trophy.createEmbed())
-                .queue();
+            MessageEmbed embed = views.trophy(trophy);
+            replies.edit(event.getHook(), hook -> hook.editOriginal(awarded ? "Trophäe erfolgreich vergeben!" : "Der Spieler hat diese Trophäe bereits!")
+                .setEmbeds(embed));
         } catch (SQLException e) {
-            event.reply("Fehler beim Vergeben der Trophäe: " + e.getMessage())
-                .setEphemeral(true)
-                .queue();
+            replies.edit(event.getHook(), hook -> hook.editOriginal("Fehler beim Vergeben der Trophäe: " + e.getMessage()));
         }
     }
 
-    private void listTrophies(SlashCommandInteractionEvent event) {
+    private void awardTrophyBulk(SlashCommandInteractionEvent event) {
+        int trophyId = event.getOption("trophy_id", OptionMapping::getAsInt);
+        Role role = event.getOption("role", OptionMapping::getAsRole);
+        String userList = event.getOption("users", OptionMapping::getAsString);
+
+        if (role == null && userList == null) {
+            replies.edit(event.getHook(), hook -> hook.editOriginal("Bitte gib eine Rolle oder eine Liste von Benutzern an!"));
+            return;
+        }
+
+        Set<String> userIds = new LinkedHashSet<>();
+        int bots = 0;
+        if (userList != null) {
+            Matcher matcher = USER_ID_PATTERN.matcher(userList);
+            while (matcher.find()) {
+                userIds.add(matcher.group());
+            }
+            Set<String> listedBots = findBots(event, userIds);
+            userIds.removeAll(listedBots);
+            bots = listedBots.size();
+        }
+        if (role != null && event.getGuild() != null) {
+            List<Member> members;
+            try {
+                members = event.getGuild().findMembersWithRoles(role).get();
+            } catch (IllegalStateException e) {
+                // JDA lädt Mitglieder nur mit dem GUILD_MEMBERS-Intent
+                logger.warn("Cannot load members of role {}: {}", role.getId(), e.getMessage());
+                replies.edit(event.getHook(), hook -> hook.editOriginal(
+                    "Die Mitglieder der Rolle können nicht geladen werden, weil der Bot den \"Server Members Intent\" nicht hat. Gib die Benutzer stattdessen über `users` an."));
+                return;
+            }
+            for (Member member : members) {
+                if (!member.getUser().isBot()) {
+                    userIds.add(member.getId());
+                }
+            }
+        }
+
+        if (userIds.isEmpty()) {
+            replies.edit(event.getHook(), hook -> hook.editOriginal("Keine passenden Benutzer gefunden!"));
+            return;
+        }
+        String botNote = bots > 0 ? String.format(" %d Bots wurden ignoriert.", bots) : "";
+
         try {
-            List<Trophy> trophies = dbManager.getAllTrophies();
-            if (trophies.isEmpty()) {
-                event.reply("Es gibt noch keine Trophäen!").queue();
+            Trophy trophy = dbManager.getTrophyById(guildId(event), trophyId);
+            if (trophy == null) {
+                replies.edit(event.getHook(), hook -> hook.editOriginal("Trophäe nicht gefunden!"));
                 return;
             }
 
-            EmbedBuilder eb = new EmbedBuilder()
-                .setTitle("🏆 Verfügbare Trophäen")
-                .setColor(Color.YELLOW)
-                .setDescription("Hier sind alle verfügbaren Trophäen:")
-                .setTimestamp(Instant.now());
+            TrophyStore.BatchAwardResult result = dbManager.awardTrophies(
+                guildId(event), userIds, trophyId, event.getUser().getId(), event.getId());
 
-            for (Trophy trophy : trophies) {
-                String fieldTitle = String.format("%s %s (ID: %d)", 
-                    trophy.getEmoji(),
-                    trophy.getName(),
-                    trophy.getId());
-                
-                String fieldValue = String.format("```%s```", trophy.getDescription());
-                
-                eb.addField(fieldTitle, fieldValue, false);
+            MessageEmbed embed = views.trophy(trophy);
+            replies.edit(event.getHook(), hook -> hook.editOriginal(String.format("Trophäe an %d Benutzer vergeben, %d übersprungen (bereits vorhanden).%s",
+                    result.getInserted(), result.getSkipped(), botNote))
+                .setEmbeds(embed));
+        } catch (SQLException e) {
+            replies.edit(event.getHook(), hook -> hook.editOriginal("Fehler beim Vergeben der Trophäe: " + e.getMessage()));
+        }
+    }
+
+    // Bots erkennt man an den aufgelösten Erwähnungen oder, bei reinen IDs, an den geladenen Mitgliedern
+    private Set<String> findBots(SlashCommandInteractionEvent event, Set<String> userIds) {
+        Set<String> bots = new HashSet<>();
+        OptionMapping users = event.getOption("users");
+        if (users != null) {
+            for (User user : users.getMentions().getUsers()) {
+                if (user.isBot()) {
+                    bots.add(user.getId());
+                }
+            }
+        }
+        if (event.getGuild() == null || userIds.isEmpty()) {
+            return bots;
+        }
+        List<String> ids = new ArrayList<>(userIds);
+        for (int from = 0; from < ids.size(); from += MEMBER_CHUNK_SIZE) {
+            long[] chunk = ids.subList(from, Math.min(from + MEMBER_CHUNK_SIZE, ids.size()))
+                .stream().mapToLong(Long::parseLong).toArray();
+            try {
+                for (Member member : event.getGuild().retrieveMembersByIds(chunk).get()) {
+                    if (member.getUser().isBot()) {
+                        bots.add(member.getId());
+                    }
+                }
+            } catch (RuntimeException e) {
+                logger.warn("Could not load listed members of guild {} to skip bots: {}", event.getGuild().getId(), e.getMessage());
             }
+        }
+        return bots;
+    }
 
-            event.replyEmbeds(eb.build())
-                .addActionRow(
-                    Button.of(ButtonStyle.PRIMARY, "trophy_list:1", "Details anzeigen")
-                )
-                .queue();
+    private void listTrophies(SlashCommandInteractionEvent event) {
+        try {
+            MessageEditData list = views.trophyList(guildId(event), 1, true, 0);
+            if (list == null) {
+                replies.edit(event.getHook(), hook -> hook.editOriginal("Es gibt noch keine Trophäen!"));
+                return;
+            }
+
+            replies.edit(event.getHook(), hook -> hook.editOriginal(list));
         } catch (SQLException e) {
-            event.reply("Fehler beim Abrufen der Trophäen: " + e.getMessage())
-                .setEphemeral(true)
-                .queue();
+            replies.edit(event.getHook(), hook -> hook.editOriginal("Fehler beim Abrufen der Trophäen: " + e.getMessage()));
         }
     }
 
@@ -169,33 +301,20 @@ public class CommandHandler extends ListenerAdapter {
         int trophyId = event.getOption("trophy_id", OptionMapping::getAsInt);
 
         try {
-            Trophy trophy = dbManager.getTrophyById(trophyId);
+            Trophy trophy = dbManager.getTrophyById(guildId(event), trophyId);
             if (trophy == null) {
-                event.reply("Trophäe nicht gefunden!").setEphemeral(true).queue();
+                replies.edit(event.getHook(), hook -> hook.editOriginal("Trophäe nicht gefunden!"));
                 return;
             }
 
-            List<UserTrophy> winners = dbManager.getUsersWithTrophy(trophyId);
-            EmbedBuilder eb = new EmbedBuilder(trophy.createEmbed());
-
-            if (!winners.isEmpty()) {
-                StringBuilder winnersList = new StringBuilder();
-                for (UserTrophy winner : winners) {
-                    winnersList.append("<@").append(winner.getUserId()).append(">\n");
-                }
-                eb.addField("Gewinner", winnersList.toString(), false);
-            }
-
-            event.replyEmbeds(eb.build())
-                .addActionRow(
+            MessageEmbed detail = views.trophyDetail(trophy);
+            replies.edit(event.getHook(), hook -> hook.editOriginalEmbeds(detail)
+                .setComponents(ActionRow.of(
                     Button.primary("trophy_detail:" + trophyId, "Details"),
                     Button.secondary("trophy_winners:" + trophyId, "Gewinner anzeigen")
-                )
-                .queue();
+                )));
         } catch (SQLException e) {
-            event.reply("Fehler beim Abrufen der Trophäe: " + e.getMessage())
-                .setEphemeral(true)
-                .queue();
+            replies.edit(event.getHook(), hook -> hook.editOriginal("Fehler beim Abrufen der Trophäe: " + e.getMessage()));
         }
     }
 
@@ -203,68 +322,38 @@ public class CommandHandler extends ListenerAdapter {
         User user = event.getOption("user", event.getUser(), OptionMapping::getAsUser);
 
         try {
-            List<UserTrophy> userTrophies = dbManager.getUserTrophies(user.getId());
-            EmbedBuilder eb = new EmbedBuilder()
-                .setTitle("🏆 Trophäenprofil von " + user.getName())
-                .setColor(Color.YELLOW)
-                .setThumbnail(user.getEffectiveAvatarUrl())
-                .setTimestamp(Instant.now());
-
-            if (userTrophies.isEmpty()) {
-                eb.setDescription("Dieser Spieler hat noch keine Trophäen erhalten.");
-            } else {
-                StringBuilder description = new StringBuilder();
-                description.append("Hier sind die Trophäen dieses Spielers:\n\n");
-                
-                for (UserTrophy userTrophy : userTrophies) {
-                    Trophy trophy = userTrophy.getTrophy();
-                    if (trophy != null) {
-                        String trophyInfo = String.format("%s **%s** (ID: %d)\n```%s```\n*Erhalten am: %s*\n\n",
-                            trophy.getEmoji(),
-                            trophy.getName(),
-                            trophy.getId(),
-                            trophy.getDescription(),
-                            userTrophy.getFormattedAwardDate());
-                        description.append(trophyInfo);
-                    }
-                }
-                eb.setDescription(description.toString());
-            }
-
-            event.replyEmbeds(eb.build()).queue();
+            MessageEditData profile = views.profile(
+                guildId(event),
+                user.getId(),
+                "🏆 Trophäenprofil von " + user.getName(),
+                user.getEffectiveAvatarUrl(),
+                1, true, 0
+            );
+            replies.edit(event.getHook(), hook -> hook.editOriginal(profile));
         } catch (SQLException e) {
             logger.error("Failed to fetch profile", e);
-            event.reply("Fehler beim Abrufen des Profils: " + e.getMessage())
-                .setEphemeral(true)
-                .queue();
+            replies.edit(event.getHook(), hook -> hook.editOriginal("Fehler beim Abrufen des Profils: " + e.getMessage()));
         }
     }
 
     private void showLeaderboard(SlashCommandInteractionEvent event) {
         try {
-            List<DatabaseManager.UserTrophyCount> leaderboard = dbManager.getLeaderboard(10);
             EmbedBuilder eb = new EmbedBuilder()
                 .setTitle("Trophy Leaderboard")
                 .setColor(Color.YELLOW)
+                .setDescription(views.leaderboard(guildId(event), 10))
                 .setTimestamp(Instant.now());
 
-            if (leaderboard.isEmpty()) {
-                eb.setDescription("Noch keine Trophäen vergeben.");
-            } else {
-                StringBuilder desc = new StringBuilder();
-                int rank = 1;
-                for (DatabaseManager.UserTrophyCount entry : leaderboard) {
-                    desc.append(String.format("%d. <@%d> - %d Trophäen\n",
-                        rank++, entry.getUserId(), entry.getCount()));
-                }
-                eb.setDescription(desc.toString());
+            String userId = event.getUser().getId();
+            int rank = dbManager.getLeaderboardRank(guildId(event), userId);
+            if (rank > 0) {
+                int count = dbManager.getTrophyCount(guildId(event), userId);
+                eb.setFooter(String.format("Dein Platz: %d mit %d Trophäen", rank, count));
             }
 
-            event.replyEmbeds(eb.build()).queue();
+            replies.edit(event.getHook(), hook -> hook.editOriginalEmbeds(eb.build()));
         } catch (SQLException e) {
-            event.reply("Fehler beim Abrufen des Leaderboards: " + e.getMessage())
-                .setEphemeral(true)
-                .queue();
+            replies.edit(event.getHook(), hook -> hook.editOriginal("Fehler beim Abrufen des Leaderboards: " + e.getMessage()));
         }
     }
 
@@ -275,32 +364,98 @@ public class CommandHandler extends ListenerAdapter {
         switch (subcommand) {
             case "reset":
                 if (!hasPermission(event.getMember(), Permission.ADMINISTRATOR)) {
-                    event.reply("Du hast keine Berechtigung, diese Aktion auszuführen!").setEphemeral(true).queue();
+                    replies.respond(event.reply("Du hast keine Berechtigung, diese Aktion auszuführen!").setEphemeral(true));
                     return;
                 }
-                resetTrophies(event);
+                runDeferred(event, () -> resetTrophies(event));
                 break;
             case "backup":
                 if (!hasPermission(event.getMember(), Permission.ADMINISTRATOR)) {
-                    event.reply("Du hast keine Berechtigung, diese Aktion auszuführen!").setEphemeral(true).queue();
+                    replies.respond(event.reply("Du hast keine Berechtigung, diese Aktion auszuführen!").setEphemeral(true));
+                    return;
+                }
+                runDeferred(event, () -> backupDatabase(event));
+                break;
+            case "rebuild":
+                if (!hasPermission(event.getMember(), Permission.ADMINISTRATOR)) {
+                    replies.respond(event.reply("Du hast keine Berechtigung, diese Aktion auszuführen!").setEphemeral(true));
                     return;
                 }
-                backupDatabase(event);
+                runDeferred(event, () -> rebuildLeaderboard(event));
                 break;
             default:
-                event.reply("Unbekannter Admin-Befehl!").setEphemeral(true).queue();
+                replies.respond(event.reply("Unbekannter Admin-Befehl!").setEphemeral(true));
                 break;
         }
     }
 
     private void resetTrophies(SlashCommandInteractionEvent event) {
-        // Logic to reset trophies
-        event.reply("Trophäen wurden zurückgesetzt.").queue();
+        CompletableFuture<DatabaseMaintenance.ResetResult> reset;
+        try {
+            reset = maintenance.resetSeason(guildId(event), event.getUser().getId(), progressReporter(event, "Zurücksetzen"));
+        } catch (IllegalStateException e) {
+            replies.edit(event.getHook(), hook -> hook.editOriginal("Es läuft bereits eine Wartungsaufgabe, bitte versuche es später noch einmal."));
+            return;
+        }
+
+        replies.edit(event.getHook(), hook -> hook.editOriginal("Zurücksetzen wird gestartet …"));
+        reset.whenComplete((result, error) -> {
+            if (error != null) {
+                replies.edit(event.getHook(), hook -> hook.editOriginal("Fehler beim Zurücksetzen der Trophäen: " + error.getMessage()));
+            } else {
+                replies.edit(event.getHook(), hook -> hook.editOriginal(String.format(
+                    "Trophäen wurden zurückgesetzt. %d Vergaben wurden als Saison %d archiviert (%d s).",
+                    result.getArchivedAwards(), result.getSeasonId(), result.getDuration().toSeconds())));
+            }
+        });
     }
 
     private void backupDatabase(SlashCommandInteractionEvent event) {
-        // Logic to backup the database
-        event.reply("Datenbank wurde gesichert.").queue();
+        CompletableFuture<DatabaseMaintenance.BackupResult> backup;
+        try {
+            // Der Worker wird sofort wieder frei, die Sicherung läuft im Wartungs-Thread
+            backup = maintenance.backup(progressReporter(event, "Sicherung"));
+        } catch (IllegalStateException e) {
+            replies.edit(event.getHook(), hook -> hook.editOriginal("Es läuft bereits eine Wartungsaufgabe, bitte versuche es später noch einmal."));
+            return;
+        }
+
+        backup.whenComplete((result, error) -> {
+            if (error != null) {
+                replies.edit(event.getHook(), hook -> hook.editOriginal("Fehler beim Sichern der Datenbank: " + error.getMessage()));
+            } else {
+                replies.edit(event.getHook(), hook -> hook.editOriginal(String.format("Datenbank wurde gesichert: `%s` (%s, %d s)",
+                    result.getFile().getFileName(),
+                    formatBytes(result.getCompressedBytes()),
+                    result.getDuration().toSeconds())));
+            }
+        });
+    }
+
+    private DatabaseMaintenance.ProgressListener progressReporter(SlashCommandInteractionEvent event, String job) {
+        return (phase, done, total) -> {
+            long percent = total > 0 ? Math.min(100, done * 100 / total) : 0;
+            String amount = phase == DatabaseMaintenance.Phase.SNAPSHOT || phase == DatabaseMaintenance.Phase.COMPRESS
+                ? String.format(" (%s von %s)", formatBytes(done), formatBytes(total))
+                : phase == DatabaseMaintenance.Phase.ARCHIVE ? String.format(" (%d von %d Vergaben)", done, total) : "";
+            replies.edit(event.getHook(), hook -> hook.editOriginal(String.format("%s läuft – %s: %d %%%s", job, phase.getLabel(), percent, amount)));
+        };
+    }
+
+    private static String formatBytes(long bytes) {
+        if (bytes < 1024 * 1024) {
+            return String.format("%.1f KB", bytes / 1024.0);
+        }
+        return String.format("%.1f MB", bytes / (1024.0 * 1024.0));
+    }
+
+    private void rebuildLeaderboard(SlashCommandInteractionEvent event) {
+        try {
+            int users = dbManager.rebuildLeaderboard(guildId(event));
+            replies.edit(event.getHook(), hook -> hook.editOriginal(String.format("Leaderboard wurde neu aufgebaut (%d Spieler).", users)));
+        } catch (SQLException e) {
+            replies.edit(event.getHook(), hook -> hook.editOriginal("Fehler beim Neuaufbau des Leaderboards: " + e.getMessage()));
+        }
     }
 
     private void removeTrophy(SlashCommandInteractionEvent event) {
@@ -308,13 +463,13 @@ public class CommandHandler extends ListenerAdapter {
         int trophyId = event.getOption("trophy_id", OptionMapping::getAsInt);
 
         try {
-            Trophy trophy = dbManager.getTrophyById(trophyId);
+            Trophy trophy = dbManager.getTrophyById(guildId(event), trophyId);
             if (trophy == null) {
-                event.reply("Trophäe nicht gefunden!").setEphemeral(true).queue();
+                replies.edit(event.getHook(), hook -> hook.editOriginal("Trophäe nicht gefunden!"));
                 return;
             }
 
-            dbManager.removeTrophy(user.getId(), trophyId);
+            dbManager.removeTrophy(guildId(event), user.getId(), trophyId);
 
             EmbedBuilder eb = new EmbedBuilder()
                 .setTitle("Trophäe entfernt")
@@ -324,18 +479,40 @@ public class CommandHandler extends ListenerAdapter {
                     user.getAsMention()))
                 .setTimestamp(Instant.now());
 
-            event.replyEmbeds(eb.build()).queue();
+            replies.edit(event.getHook(), hook -> hook.editOriginalEmbeds(eb.build()));
         } catch (SQLException e) {
             String errorMessage = e.getMessage().contains("Trophy not found") ?
                 "Diese Trophäe wurde dem Benutzer noch nicht verliehen!" :
                 "Fehler beim Entfernen der Trophäe: " + e.getMessage();
             
-            event.reply(errorMessage)
-                .setEphemeral(true)
-                .queue();
+            replies.edit(event.getHook(), hook -> hook.editOriginal(errorMessage));
         }
     }
 
+    private void runDeferred(SlashCommandInteractionEvent event, Runnable task) {
+        long start = System.nanoTime();
+        replies.respond(event.deferReply());
+        String guildId = event.getGuild() != null ? event.getGuild().getId() : "direct";
+        executor.submit(guildId, () -> {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                COMMAND_ERRORS.inc(event.getName(), event.getSubcommandName(), "exception");
+                logger.error("Failed to handle command {} {}", event.getName(), event.getSubcommandName(), e);
+                replies.edit(event.getHook(), hook -> hook.editOriginal("Ein unerwarteter Fehler ist aufgetreten."));
+            } finally {
+                COMMAND_DURATION.observeSince(start, event.getName(), event.getSubcommandName());
+            }
+        }, () -> {
+            COMMAND_ERRORS.inc(event.getName(), event.getSubcommandName(), "rejected");
+            replies.edit(event.getHook(), hook -> hook.editOriginal("Der Bot ist gerade ausgelastet, bitte versuche es gleich noch einmal."));
+        });
+    }
+
+    private static String guildId(SlashCommandInteractionEvent event) {
+        return event.getGuild().getId();
+    }
+
     private boolean hasPermission(Member member, Permission permission) {
         return member != null && member.hasPermission(permission);
     }
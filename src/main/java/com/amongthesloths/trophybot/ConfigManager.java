@@ -1,44 +1,195 @@
 package com.amongthesloths.trophybot;
 
-import java.net.URL;
-import java.nio.charset.StandardCharsets;
 import org.json.JSONArray;
+import org.json.JSONException;
 import org.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import java.io.*;
 
-public class ConfigManager {
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Loads config.json from the file system and reloads it when the file changes. Every version is published as an
+ * immutable {@link ConfigSnapshot}; subscribers get the new snapshot and apply what they can change at runtime.
+ * An invalid file is logged and ignored, the previous snapshot stays active. Keys that are only read on startup are
+ * listed in {@link #RESTART_REQUIRED}, changing them logs a warning.
+ */
+public class ConfigManager implements AutoCloseable {
 	private static final Logger logger = LoggerFactory.getLogger(ConfigManager.class);
-	private JSONObject config = null;
+	// Editoren schreiben Dateien oft in mehreren Schritten, erst danach neu laden
+	private static final long RELOAD_DELAY_MILLIS = 250;
 
-	public ConfigManager(URL configUrl) {
-		try {
-			try (InputStream is = configUrl.openStream();
-					BufferedReader reader = new BufferedReader(new InputStreamReader(is, StandardCharsets.UTF_8))) {
+	static final List<String> RESTART_REQUIRED = List.of(
+			"database/url",
+			"database/user",
+			"database/password",
+			"database/legacy_guild_id",
+			"database/single_flight",
+			"database/pool/readers",
+			"database/pool/acquire_timeout_ms",
+			"database/pool/statement_cache_size",
+			"database/write_queue/capacity",
+			"executor/queue_capacity",
+			"replies/queue_capacity",
+			"sharding",
+			"backup",
+			"warm_start",
+			"metrics");
 
-				StringBuilder content = new StringBuilder();
-				String line;
-				while ((line = reader.readLine()) != null) {
-					content.append(line);
+	private final Path path;
+	private final List<Consumer<ConfigSnapshot>> subscribers = new CopyOnWriteArrayList<>();
+	private volatile ConfigSnapshot current;
+	private WatchService watchService;
+
+	public ConfigManager(Path path) {
+		this.path = path.toAbsolutePath();
+		this.current = new ConfigSnapshot(loadInitial());
+	}
+
+	private JSONObject loadInitial() {
+		try {
+			if (Files.exists(path)) {
+				String content = Files.readString(path, StandardCharsets.UTF_8);
+				if (!content.isBlank()) {
+					logger.info("Configuration loaded from {}", path);
+					return new JSONObject(content);
 				}
+				logger.warn("Config file {} was empty, creating default configuration", path);
+				return createDefaultConfig();
+			}
 
-				String configContent = content.toString();
-				if (!configContent.isBlank()) {
-					this.config = new JSONObject(configContent);
-					logger.info("Configuration loaded successfully");
-				} else {
-					logger.warn("Config file was empty, creating default configuration");
-					this.config = createDefaultConfig();
+			// Ältere Installationen haben die Konfiguration ins JAR gepackt, dann gibt es kein Neuladen
+			try (InputStream is = ConfigManager.class.getClassLoader().getResourceAsStream("config.json")) {
+				if (is != null) {
+					logger.warn("Config file {} not found, using config.json from the classpath", path);
+					return new JSONObject(new String(is.readAllBytes(), StandardCharsets.UTF_8));
 				}
 			}
+			logger.warn("Config file {} not found, creating default configuration", path);
+			return createDefaultConfig();
 		} catch (IOException e) {
 			logger.warn("Could not load config file, creating default configuration", e);
-			this.config = createDefaultConfig();
+			return createDefaultConfig();
 		}
+	}
+
+	public ConfigSnapshot current() {
+		return current;
+	}
 
-		if (this.config == null) {
-			throw new RuntimeException("Failed to initialize configuration");
+	/**
+	 * Registers a subscriber for new snapshots. It is called on the watcher thread after every successful reload.
+	 */
+	public void subscribe(Consumer<ConfigSnapshot> subscriber) {
+		subscribers.add(subscriber);
+	}
+
+	/**
+	 * Starts watching the config file. Also picks up a file that is only created later.
+	 */
+	public void watch() throws IOException {
+		Path directory = path.getParent();
+		watchService = FileSystems.getDefault().newWatchService();
+		directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+		Thread watcher = new Thread(this::run, "trophybot-config-watcher");
+		watcher.setDaemon(true);
+		watcher.start();
+		logger.info("Watching {} for configuration changes", path);
+	}
+
+	private void run() {
+		try {
+			while (true) {
+				WatchKey key = watchService.take();
+				boolean changed = containsConfigFile(key);
+				if (!changed) {
+					continue;
+				}
+				// Weitere Events desselben Speichervorgangs abwarten und zusammenfassen
+				WatchKey more;
+				while ((more = watchService.poll(RELOAD_DELAY_MILLIS, TimeUnit.MILLISECONDS)) != null) {
+					containsConfigFile(more);
+				}
+				reload();
+			}
+		} catch (InterruptedException | ClosedWatchServiceException e) {
+			logger.debug("Config watcher stopped");
+		}
+	}
+
+	private boolean containsConfigFile(WatchKey key) {
+		boolean found = false;
+		for (WatchEvent<?> event : key.pollEvents()) {
+			if (event.kind() == StandardWatchEventKinds.OVERFLOW || path.getFileName().equals(event.context())) {
+				found = true;
+			}
+		}
+		key.reset();
+		return found;
+	}
+
+	/**
+	 * Reads the file again and publishes it if it is valid and differs from the current snapshot.
+	 *
+	 * @return whether a new snapshot was published
+	 */
+	public boolean reload() {
+		ConfigSnapshot next;
+		try {
+			String content = Files.readString(path, StandardCharsets.UTF_8);
+			if (content.isBlank()) {
+				logger.warn("Config file {} is empty, keeping the previous configuration", path);
+				return false;
+			}
+			next = new ConfigSnapshot(new JSONObject(content));
+		} catch (IOException | JSONException e) {
+			logger.error("Could not reload {}, keeping the previous configuration", path, e);
+			return false;
+		}
+
+		ConfigSnapshot previous = current;
+		if (next.isSame(previous)) {
+			return false;
+		}
+		for (String key : RESTART_REQUIRED) {
+			if (!next.isSame(previous, key)) {
+				logger.warn("Configuration key {} changed, it takes effect after a restart", key.replace('/', '.'));
+			}
+		}
+		current = next;
+		logger.info("Configuration reloaded from {}", path);
+		for (Consumer<ConfigSnapshot> subscriber : subscribers) {
+			try {
+				subscriber.accept(next);
+			} catch (RuntimeException e) {
+				logger.error("Failed to apply the reloaded configuration", e);
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public void close() {
+		if (watchService != null) {
+			try {
+				watchService.close();
+			} catch (IOException e) {
+				logger.warn("Failed to close the config watcher", e);
+			}
 		}
 	}
 
@@ -46,34 +197,52 @@ public class ConfigManager {
 		JSONObject defaultConfig = new JSONObject();
 		defaultConfig.put(
 				"database",
-				new JSONObject().put("url", "jdbc:sqlite:trophies.db").put("user", "").put("password", ""));
+				new JSONObject()
+						.put("url", "jdbc:sqlite:trophies.db")
+						.put("user", "")
+						.put("password", "")
+						.put("legacy_guild_id", "")
+						.put("single_flight", true)
+						.put("pool", new JSONObject()
+								.put("readers", 4)
+								.put("max_size", 10)
+								.put("acquire_timeout_ms", 5000)
+								.put("statement_cache_size", ConnectionPool.DEFAULT_STATEMENT_CACHE_SIZE))
+						.put("write_queue", new JSONObject()
+								.put("capacity", GroupCommitWriter.DEFAULT_QUEUE_CAPACITY)
+								.put("max_batch", GroupCommitWriter.DEFAULT_MAX_BATCH_SIZE)
+								.put("max_delay_ms", GroupCommitWriter.DEFAULT_MAX_DELAY_MILLIS)));
 
 		defaultConfig.put(
-				"permissions",
+				"executor",
 				new JSONObject()
-						.put("admin_roles", new JSONArray())
-						.put("trophy_manager_roles", new JSONArray()));
+						.put("workers", Runtime.getRuntime().availableProcessors() * 2)
+						.put("queue_capacity", 256)
+						.put("per_guild_limit", 4));
 
-		return defaultConfig;
-	}
+		defaultConfig.put("replies", new JSONObject()
+				.put("max_in_flight", ReplyScheduler.DEFAULT_MAX_IN_FLIGHT)
+				.put("queue_capacity", ReplyScheduler.DEFAULT_QUEUE_CAPACITY));
 
-	public String getDatabaseUrl() {
-		return config.getJSONObject("database").getString("url");
-	}
+		defaultConfig.put("sharding", new JSONObject().put("total", -1).put("ids", new JSONArray()));
 
-	public String getDatabaseUser() {
-		return config.getJSONObject("database").getString("user");
-	}
+		defaultConfig.put("cache", new JSONObject()
+				.put("embed_entries", 1000)
+				.put("member_entries", 10000)
+				.put("member_ttl_minutes", 60));
 
-	public String getDatabasePassword() {
-		return config.getJSONObject("database").getString("password");
-	}
+		defaultConfig.put("backup", new JSONObject().put("directory", "backups"));
 
-	public JSONArray getAdminRoles() {
-		return config.getJSONObject("permissions").getJSONArray("admin_roles");
-	}
+		defaultConfig.put("warm_start", new JSONObject().put("file", "warm-start.bin"));
+
+		defaultConfig.put("metrics", new JSONObject().put("host", "0.0.0.0").put("port", 0));
 
-	public JSONArray getTrophyManagerRoles() {
-		return config.getJSONObject("permissions").getJSONArray("trophy_manager_roles");
+		defaultConfig.put(
+				"permissions",
+				new JSONObject()
+						.put("admin_roles", new JSONArray())
+						.put("trophy_manager_roles", new JSONArray()));
+
+		return defaultConfig;
 	}
 }
@@ -0,0 +1,197 @@
+package com.amongthesloths.trophybot;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Immutable view of one version of the configuration. Components read all values of one change from the same
+ * snapshot, a reload replaces the snapshot as a whole.
+ */
+public final class ConfigSnapshot {
+	private final JSONObject config;
+
+	ConfigSnapshot(JSONObject config) {
+		// Eigene Kopie, damit niemand den Inhalt nachträglich ändern kann
+		this.config = new JSONObject(config.toString());
+	}
+
+	public String getDatabaseUrl() {
+		return config.getJSONObject("database").getString("url");
+	}
+
+	public String getDatabaseUser() {
+		return config.getJSONObject("database").getString("user");
+	}
+
+	public String getDatabasePassword() {
+		return config.getJSONObject("database").getString("password");
+	}
+
+	public int getDatabaseReaderPoolSize() {
+		return getDatabasePoolConfig().optInt("readers", 4);
+	}
+
+	// Nur für PostgreSQL, SQLite nutzt einen Writer und "readers" Leser
+	public int getDatabaseMaxPoolSize() {
+		return getDatabasePoolConfig().optInt("max_size", 10);
+	}
+
+	public boolean isPostgresDatabase() {
+		return getDatabaseUrl().startsWith("jdbc:postgresql:");
+	}
+
+	public long getDatabaseAcquireTimeoutMillis() {
+		return getDatabasePoolConfig().optLong("acquire_timeout_ms", 5000);
+	}
+
+	public int getDatabaseStatementCacheSize() {
+		return getDatabasePoolConfig().optInt("statement_cache_size", ConnectionPool.DEFAULT_STATEMENT_CACHE_SIZE);
+	}
+
+	public int getWriteQueueCapacity() {
+		return getWriteQueueConfig().optInt("capacity", GroupCommitWriter.DEFAULT_QUEUE_CAPACITY);
+	}
+
+	public int getWriteQueueMaxBatch() {
+		return getWriteQueueConfig().optInt("max_batch", GroupCommitWriter.DEFAULT_MAX_BATCH_SIZE);
+	}
+
+	public long getWriteQueueMaxDelayMillis() {
+		return getWriteQueueConfig().optLong("max_delay_ms", GroupCommitWriter.DEFAULT_MAX_DELAY_MILLIS);
+	}
+
+	private JSONObject getWriteQueueConfig() {
+		JSONObject writeQueue = config.getJSONObject("database").optJSONObject("write_queue");
+		return writeQueue != null ? writeQueue : new JSONObject();
+	}
+
+	// Server, dem Trophäen aus der Zeit vor der Aufteilung nach Servern zugeordnet werden
+	public String getLegacyGuildId() {
+		return config.getJSONObject("database").optString("legacy_guild_id", "");
+	}
+
+	// Gleichzeitige identische Lesezugriffe teilen sich eine Abfrage
+	public boolean isSingleFlightEnabled() {
+		return config.getJSONObject("database").optBoolean("single_flight", true);
+	}
+
+	private JSONObject getDatabasePoolConfig() {
+		JSONObject pool = config.getJSONObject("database").optJSONObject("pool");
+		return pool != null ? pool : new JSONObject();
+	}
+
+	public int getExecutorWorkers() {
+		return getExecutorConfig().optInt("workers", Runtime.getRuntime().availableProcessors() * 2);
+	}
+
+	public int getExecutorQueueCapacity() {
+		return getExecutorConfig().optInt("queue_capacity", 256);
+	}
+
+	public int getExecutorPerGuildLimit() {
+		return getExecutorConfig().optInt("per_guild_limit", 4);
+	}
+
+	private JSONObject getExecutorConfig() {
+		JSONObject executor = config.optJSONObject("executor");
+		return executor != null ? executor : new JSONObject();
+	}
+
+	// -1 übernimmt die von Discord empfohlene Anzahl
+	public int getShardsTotal() {
+		JSONObject sharding = config.optJSONObject("sharding");
+		return sharding != null ? sharding.optInt("total", -1) : -1;
+	}
+
+	// Leer startet alle Shards in diesem Prozess
+	public List<Integer> getShardIds() {
+		JSONObject sharding = config.optJSONObject("sharding");
+		JSONArray ids = sharding != null ? sharding.optJSONArray("ids") : null;
+		List<Integer> result = new ArrayList<>();
+		if (ids != null) {
+			for (int i = 0; i < ids.length(); i++) {
+				result.add(ids.getInt(i));
+			}
+		}
+		return result;
+	}
+
+	public int getEmbedCacheSize() {
+		JSONObject cache = config.optJSONObject("cache");
+		return cache != null ? cache.optInt("embed_entries", 1000) : 1000;
+	}
+
+	public int getMemberCacheSize() {
+		JSONObject cache = config.optJSONObject("cache");
+		return cache != null ? cache.optInt("member_entries", 10000) : 10000;
+	}
+
+	public long getMemberCacheTtlMinutes() {
+		JSONObject cache = config.optJSONObject("cache");
+		return cache != null ? cache.optLong("member_ttl_minutes", 60) : 60;
+	}
+
+	// Anfragen pro Route, die gleichzeitig bei Discord sein dürfen, weitere warten im Scheduler
+	public int getReplyMaxInFlight() {
+		JSONObject replies = config.optJSONObject("replies");
+		return replies != null ? replies.optInt("max_in_flight", ReplyScheduler.DEFAULT_MAX_IN_FLIGHT)
+				: ReplyScheduler.DEFAULT_MAX_IN_FLIGHT;
+	}
+
+	public int getReplyQueueCapacity() {
+		JSONObject replies = config.optJSONObject("replies");
+		return replies != null ? replies.optInt("queue_capacity", ReplyScheduler.DEFAULT_QUEUE_CAPACITY)
+				: ReplyScheduler.DEFAULT_QUEUE_CAPACITY;
+	}
+
+	// Leer schaltet den Warmstart-Snapshot ab
+	public String getWarmStartFile() {
+		JSONObject warmStart = config.optJSONObject("warm_start");
+		return warmStart != null ? warmStart.optString("file", "warm-start.bin") : "warm-start.bin";
+	}
+
+	public String getBackupDirectory() {
+		JSONObject backup = config.optJSONObject("backup");
+		return backup != null ? backup.optString("directory", "backups") : "backups";
+	}
+
+	// Port 0 schaltet den Metrics-Endpunkt ab
+	public int getMetricsPort() {
+		JSONObject metrics = config.optJSONObject("metrics");
+		return metrics != null ? metrics.optInt("port", 0) : 0;
+	}
+
+	public String getMetricsHost() {
+		JSONObject metrics = config.optJSONObject("metrics");
+		return metrics != null ? metrics.optString("host", "0.0.0.0") : "0.0.0.0";
+	}
+
+	public JSONArray getAdminRoles() {
+		return new JSONArray(config.getJSONObject("permissions").getJSONArray("admin_roles").toList());
+	}
+
+	public JSONArray getTrophyManagerRoles() {
+		return new JSONArray(config.getJSONObject("permissions").getJSONArray("trophy_manager_roles").toList());
+	}
+
+	/**
+	 * Compares the whole configuration with another snapshot, ignoring key order and the type of numbers.
+	 */
+	public boolean isSame(ConfigSnapshot other) {
+		return config.similar(other.config);
+	}
+
+	/**
+	 * Compares the value at a slash separated path such as {@code database/pool/readers} with another snapshot.
+	 */
+	public boolean isSame(ConfigSnapshot other, String path) {
+		Object mine = config.optQuery("/" + path);
+		Object theirs = other.config.optQuery("/" + path);
+		// similar() vergleicht auch verschachtelte Objekte und Zahlen unterschiedlichen Typs
+		return new JSONObject().put("value", mine != null ? mine : JSONObject.NULL)
+				.similar(new JSONObject().put("value", theirs != null ? theirs : JSONObject.NULL));
+	}
+}
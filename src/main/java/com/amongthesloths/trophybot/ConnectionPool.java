@@ -0,0 +1,303 @@
+package com.amongthesloths.trophybot;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Connection pool with a single writer connection and a fixed set of read-only reader connections.
+ * For SQLite the database is switched to WAL mode so readers never wait behind the writer.
+ * Every pooled connection keeps its prepared statements in a {@link StatementCache}.
+ */
+public class ConnectionPool implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(ConnectionPool.class);
+    private static final int BUSY_TIMEOUT_MS = 5000;
+    public static final int DEFAULT_STATEMENT_CACHE_SIZE = 64;
+
+    private final String url;
+    private final String user;
+    private final String password;
+    private final boolean sqlite;
+    private final long acquireTimeoutMillis;
+    private final int statementCacheSize;
+
+    private final ReentrantLock writerLock = new ReentrantLock(true);
+    private final Connection writer;
+    private final BlockingQueue<Connection> readers;
+    private final List<Connection> allReaders = new ArrayList<>();
+    // Nur beim Öffnen geschrieben, danach nur gelesen
+    private final Map<Connection, StatementCache> statementCaches = new IdentityHashMap<>();
+
+    private final PoolStats writerStats = new PoolStats();
+    private final PoolStats readerStats = new PoolStats();
+    private final StatementCache.Stats statementStats = new StatementCache.Stats();
+
+    /**
+     * File of an SQLite URL, or {@code null} for in-memory databases and other drivers.
+     */
+    public static Path sqliteFile(String url) {
+        if (!url.startsWith("jdbc:sqlite:") || url.contains(":memory:")) {
+            return null;
+        }
+        String file = url.substring("jdbc:sqlite:".length());
+        int parameters = file.indexOf('?');
+        if (parameters >= 0) {
+            file = file.substring(0, parameters);
+        }
+        if (file.startsWith("file:")) {
+            file = file.substring("file:".length());
+        }
+        return file.isEmpty() ? null : Path.of(file);
+    }
+
+    public ConnectionPool(String url, String user, String password, int readerCount, long acquireTimeoutMillis) throws SQLException {
+        this(url, user, password, readerCount, acquireTimeoutMillis, DEFAULT_STATEMENT_CACHE_SIZE);
+    }
+
+    public ConnectionPool(String url, String user, String password, int readerCount, long acquireTimeoutMillis,
+                          int statementCacheSize) throws SQLException {
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.sqlite = url.startsWith("jdbc:sqlite:");
+        this.acquireTimeoutMillis = acquireTimeoutMillis;
+        this.statementCacheSize = statementCacheSize;
+
+        // Eine In-Memory-Datenbank existiert nur pro Verbindung, Reader müssen dann den Writer mitbenutzen
+        if (sqlite && url.contains(":memory:") && readerCount > 0) {
+            logger.warn("In-memory SQLite database cannot be shared, disabling reader connections");
+            readerCount = 0;
+        }
+
+        logger.info("Opening connection pool for {} with 1 writer and {} readers", url, readerCount);
+        this.writer = openConnection(false);
+        this.readers = new ArrayBlockingQueue<>(Math.max(1, readerCount));
+        try {
+            for (int i = 0; i < readerCount; i++) {
+                Connection reader = openConnection(true);
+                allReaders.add(reader);
+                readers.add(reader);
+            }
+        } catch (SQLException e) {
+            close();
+            throw e;
+        }
+    }
+
+    private Connection openConnection(boolean readOnly) throws SQLException {
+        Connection connection = DriverManager.getConnection(url, user, password);
+        if (sqlite) {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("PRAGMA busy_timeout = " + BUSY_TIMEOUT_MS);
+                if (readOnly) {
+                    statement.execute("PRAGMA query_only = ON");
+                } else {
+                    statement.execute("PRAGMA journal_mode = WAL");
+                }
+            }
+        } else if (readOnly) {
+            connection.setReadOnly(true);
+        }
+        statementCaches.put(connection, new StatementCache(connection, statementCacheSize, statementStats));
+        return connection;
+    }
+
+    /**
+     * Opens a separate connection outside of the pool for long-running maintenance work such as backups, so it
+     * neither holds a reader nor the writer. The caller has to close it.
+     */
+    public Connection openMaintenanceConnection() throws SQLException {
+        if (sqlite && url.contains(":memory:")) {
+            throw new SQLException("An in-memory database cannot be opened a second time");
+        }
+        Connection connection = DriverManager.getConnection(url, user, password);
+        if (sqlite) {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("PRAGMA busy_timeout = " + BUSY_TIMEOUT_MS);
+            }
+        }
+        return connection;
+    }
+
+    public Lease acquireWriter() throws SQLException {
+        long start = System.nanoTime();
+        try {
+            if (!writerLock.tryLock(acquireTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                writerStats.recordTimeout();
+                throw new SQLException("Timed out waiting for the database writer connection");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for the database writer connection", e);
+        }
+        writerStats.recordAcquire(System.nanoTime() - start);
+        return new Lease(writer, true);
+    }
+
+    public Lease acquireReader() throws SQLException {
+        if (allReaders.isEmpty()) {
+            return acquireWriter();
+        }
+
+        long start = System.nanoTime();
+        Connection connection;
+        try {
+            connection = readers.poll(acquireTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database reader connection", e);
+        }
+        if (connection == null) {
+            readerStats.recordTimeout();
+            throw new SQLException("Timed out waiting for a database reader connection");
+        }
+        readerStats.recordAcquire(System.nanoTime() - start);
+        return new Lease(connection, false);
+    }
+
+    private void release(Lease lease) {
+        if (lease.writer) {
+            try {
+                if (!writer.getAutoCommit()) {
+                    logger.warn("Writer connection released inside a transaction, rolling back");
+                    writer.rollback();
+                    writer.setAutoCommit(true);
+                }
+            } catch (SQLException e) {
+                logger.error("Failed to reset writer connection", e);
+            } finally {
+                writerLock.unlock();
+            }
+        } else {
+            readers.offer(lease.connection);
+        }
+    }
+
+    public PoolStats getWriterStats() {
+        return writerStats;
+    }
+
+    public PoolStats getReaderStats() {
+        return readerStats;
+    }
+
+    public StatementCache.Stats getStatementStats() {
+        return statementStats;
+    }
+
+    public long getAcquireTimeoutMillis() {
+        return acquireTimeoutMillis;
+    }
+
+    public int getReaderCount() {
+        return allReaders.size();
+    }
+
+    public int getIdleReaderCount() {
+        return readers.size();
+    }
+
+    public boolean isSqlite() {
+        return sqlite;
+    }
+
+    @Override
+    public void close() {
+        logger.info("Closing connection pool");
+        for (Connection reader : allReaders) {
+            closeQuietly(reader);
+        }
+        closeQuietly(writer);
+    }
+
+    private void closeQuietly(Connection connection) {
+        try {
+            if (connection != null && !connection.isClosed()) {
+                connection.close();
+            }
+        } catch (SQLException e) {
+            logger.error("Failed to close database connection", e);
+        }
+    }
+
+    public final class Lease implements AutoCloseable {
+        private final Connection connection;
+        private final boolean writer;
+        private boolean released;
+
+        private Lease(Connection connection, boolean writer) {
+            this.connection = connection;
+            this.writer = writer;
+        }
+
+        /**
+         * @return the leased connection; its prepared statements are cached, so closing them is cheap but still required
+         */
+        public Connection getConnection() {
+            return statementCaches.get(connection).getConnection();
+        }
+
+        @Override
+        public void close() {
+            if (!released) {
+                released = true;
+                release(this);
+            }
+        }
+    }
+
+    public static class PoolStats {
+        private final AtomicLong acquisitions = new AtomicLong();
+        private final AtomicLong timeouts = new AtomicLong();
+        private final AtomicLong totalWaitNanos = new AtomicLong();
+        private final AtomicLong maxWaitNanos = new AtomicLong();
+
+        private void recordAcquire(long waitNanos) {
+            acquisitions.incrementAndGet();
+            totalWaitNanos.addAndGet(waitNanos);
+            maxWaitNanos.accumulateAndGet(waitNanos, Math::max);
+        }
+
+        private void recordTimeout() {
+            timeouts.incrementAndGet();
+        }
+
+        public long getAcquisitions() {
+            return acquisitions.get();
+        }
+
+        public long getTimeouts() {
+            return timeouts.get();
+        }
+
+        public long getTotalWaitNanos() {
+            return totalWaitNanos.get();
+        }
+
+        public long getMaxWaitNanos() {
+            return maxWaitNanos.get();
+        }
+
+        @Override
+        public String toString() {
+            long count = acquisitions.get();
+            long avgMicros = count == 0 ? 0 : totalWaitNanos.get() / count / 1000;
+            return String.format("acquisitions=%d, timeouts=%d, avgWait=%dµs, maxWait=%dµs",
+                count, timeouts.get(), avgMicros, maxWaitNanos.get() / 1000);
+        }
+    }
+}
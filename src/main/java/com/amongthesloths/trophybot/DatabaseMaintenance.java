@@ -0,0 +1,338 @@
+package com.amongthesloths.trophybot;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Runs long database jobs (backups, season resets) on a background thread, one job at a time, and reports their
+ * progress.
+ */
+public class DatabaseMaintenance {
+    private static final Logger logger = LoggerFactory.getLogger(DatabaseMaintenance.class);
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final long PROGRESS_INTERVAL_MS = 2000;
+    private static final DateTimeFormatter FILE_TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+    private static final int RESET_CHUNK_SIZE = 2000;
+    private static final long RESET_PAUSE_MS = 20;
+
+    private final TrophyStore dbManager;
+    private final ConnectionPool pool;
+    private final Path backupDirectory;
+    private final ScheduledExecutorService scheduler;
+    private final AtomicBoolean busy = new AtomicBoolean();
+
+    public enum Phase {
+        SNAPSHOT("Snapshot"),
+        COMPRESS("Komprimierung"),
+        ARCHIVE("Archivierung"),
+        REBUILD("Neuaufbau");
+
+        private final String label;
+
+        Phase(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    @FunctionalInterface
+    private interface Job<T> {
+        T run() throws IOException, SQLException, InterruptedException;
+    }
+
+    @FunctionalInterface
+    public interface ProgressListener {
+        void progress(Phase phase, long done, long total);
+    }
+
+    public DatabaseMaintenance(TrophyStore dbManager, Path backupDirectory) {
+        this.dbManager = dbManager;
+        // Sicherungen und PRAGMA optimize gibt es nur für die SQLite-Datei
+        this.pool = dbManager instanceof DatabaseManager ? ((DatabaseManager) dbManager).getPool() : null;
+        this.backupDirectory = backupDirectory;
+        AtomicInteger threadId = new AtomicInteger();
+        // Ein Thread für den Job, einer für die Fortschrittsmeldungen während VACUUM INTO läuft
+        this.scheduler = Executors.newScheduledThreadPool(2, runnable -> {
+            Thread thread = new Thread(runnable, "database-maintenance-" + threadId.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Writes a gzip-compressed snapshot of the database to the backup directory.
+     * The snapshot is taken with VACUUM INTO on a separate connection: it reads inside a single read transaction, so
+     * in WAL mode the writer keeps committing while the backup runs. Compression streams through a fixed-size buffer.
+     *
+     * @throws IllegalStateException if another maintenance job is still running
+     */
+    public CompletableFuture<BackupResult> backup(ProgressListener listener) {
+        if (pool == null || !pool.isSqlite()) {
+            return CompletableFuture.failedFuture(new SQLException("Backups are only supported for SQLite databases"));
+        }
+        return submit("Database backup", () -> runBackup(listener));
+    }
+
+    /**
+     * Ends the current season of a guild: archives its awards into trophy_awards_archive in short chunked transactions
+     * and then rebuilds the guild's leaderboard. Awards made while the reset runs belong to the new season.
+     *
+     * @throws IllegalStateException if another maintenance job is still running
+     */
+    public CompletableFuture<ResetResult> resetSeason(String guildId, String endedBy, ProgressListener listener) {
+        return submit("Season reset", () -> runReset(guildId, endedBy, listener));
+    }
+
+    private <T> CompletableFuture<T> submit(String name, Job<T> job) {
+        if (!busy.compareAndSet(false, true)) {
+            throw new IllegalStateException("Another maintenance job is already running");
+        }
+
+        CompletableFuture<T> result = new CompletableFuture<>();
+        scheduler.execute(() -> {
+            try {
+                result.complete(job.run());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                result.completeExceptionally(e);
+            } catch (IOException | SQLException | RuntimeException e) {
+                logger.error("{} failed", name, e);
+                result.completeExceptionally(e);
+            } finally {
+                busy.set(false);
+            }
+        });
+        return result;
+    }
+
+    private ResetResult runReset(String guildId, String endedBy, ProgressListener listener)
+            throws SQLException, InterruptedException {
+        long start = System.nanoTime();
+        TrophyStore.SeasonArchive season = dbManager.startSeasonArchive(guildId, endedBy);
+        logger.info("Archiving {} awards of guild {} into season {}", season.getAwardCount(), guildId, season.getId());
+
+        long archived = 0;
+        long lastReport = 0;
+        int moved;
+        while ((moved = dbManager.archiveAwards(season, RESET_CHUNK_SIZE)) > 0) {
+            archived += moved;
+            long now = System.currentTimeMillis();
+            if (now - lastReport >= PROGRESS_INTERVAL_MS) {
+                listener.progress(Phase.ARCHIVE, archived, season.getAwardCount());
+                lastReport = now;
+            }
+            // Kurze Pause, damit wartende Vergaben zwischen zwei Blöcken an den Writer kommen
+            Thread.sleep(RESET_PAUSE_MS);
+        }
+
+        listener.progress(Phase.REBUILD, 0, 1);
+        int users = dbManager.rebuildLeaderboard(guildId);
+        optimize();
+
+        ResetResult reset = new ResetResult(season.getId(), archived, users, Duration.ofNanos(System.nanoTime() - start));
+        logger.info("Season reset of guild {} finished: {}", guildId, reset);
+        return reset;
+    }
+
+    // Aktualisiert die Statistiken des Query-Planers nach dem Löschen vieler Zeilen
+    private void optimize() {
+        if (pool == null || !pool.isSqlite()) {
+            return;
+        }
+        try (ConnectionPool.Lease lease = pool.acquireWriter();
+             Statement statement = lease.getConnection().createStatement()) {
+            statement.execute("PRAGMA optimize");
+        } catch (SQLException e) {
+            logger.warn("PRAGMA optimize failed", e);
+        }
+    }
+
+    private BackupResult runBackup(ProgressListener listener) throws IOException, SQLException {
+        long start = System.nanoTime();
+        Files.createDirectories(backupDirectory);
+        String name = "trophies-" + LocalDateTime.now().format(FILE_TIMESTAMP);
+        Path snapshot = backupDirectory.resolve(name + ".db.tmp");
+        Path compressed = backupDirectory.resolve(name + ".db.gz.tmp");
+        Path target = backupDirectory.resolve(name + ".db.gz");
+        logger.info("Starting database backup to {}", target);
+
+        try {
+            long databaseBytes = snapshot(snapshot, listener);
+            long compressedBytes = compress(snapshot, compressed, listener);
+            Files.move(compressed, target, StandardCopyOption.ATOMIC_MOVE);
+            BackupResult backup = new BackupResult(target, databaseBytes, compressedBytes, Duration.ofNanos(System.nanoTime() - start));
+            logger.info("Database backup finished: {}", backup);
+            return backup;
+        } finally {
+            Files.deleteIfExists(snapshot);
+            Files.deleteIfExists(compressed);
+        }
+    }
+
+    private long snapshot(Path snapshot, ProgressListener listener) throws SQLException {
+        try (Connection connection = pool.openMaintenanceConnection()) {
+            long expectedBytes = usedBytes(connection);
+            // VACUUM INTO meldet keinen Fortschritt, daher wird die Größe der Zieldatei beobachtet
+            ScheduledFuture<?> monitor = scheduler.scheduleAtFixedRate(
+                () -> listener.progress(Phase.SNAPSHOT, sizeOf(snapshot), expectedBytes),
+                0, PROGRESS_INTERVAL_MS, TimeUnit.MILLISECONDS);
+            try (PreparedStatement statement = connection.prepareStatement("VACUUM INTO ?")) {
+                statement.setString(1, snapshot.toAbsolutePath().toString());
+                statement.execute();
+            } finally {
+                monitor.cancel(false);
+            }
+        }
+        return sizeOf(snapshot);
+    }
+
+    private static long usedBytes(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            long pageSize = pragma(statement, "page_size");
+            return (pragma(statement, "page_count") - pragma(statement, "freelist_count")) * pageSize;
+        }
+    }
+
+    private static long pragma(Statement statement, String name) throws SQLException {
+        try (ResultSet resultSet = statement.executeQuery("PRAGMA " + name)) {
+            return resultSet.next() ? resultSet.getLong(1) : 0;
+        }
+    }
+
+    private static long sizeOf(Path file) {
+        try {
+            return Files.exists(file) ? Files.size(file) : 0;
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private long compress(Path source, Path target, ProgressListener listener) throws IOException {
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            long total = in.size();
+            long done = 0;
+            long lastReport = 0;
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            OutputStream channelStream = Channels.newOutputStream(out);
+            try (GZIPOutputStream gzip = new GZIPOutputStream(channelStream, BUFFER_SIZE)) {
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    gzip.write(buffer.array(), 0, read);
+                    buffer.clear();
+                    done += read;
+                    long now = System.currentTimeMillis();
+                    if (now - lastReport >= PROGRESS_INTERVAL_MS) {
+                        listener.progress(Phase.COMPRESS, done, total);
+                        lastReport = now;
+                    }
+                }
+                gzip.finish();
+                out.force(true);
+            }
+            listener.progress(Phase.COMPRESS, total, total);
+            return Files.size(target);
+        }
+    }
+
+    public static class ResetResult {
+        private final long seasonId;
+        private final long archivedAwards;
+        private final int remainingUsers;
+        private final Duration duration;
+
+        public ResetResult(long seasonId, long archivedAwards, int remainingUsers, Duration duration) {
+            this.seasonId = seasonId;
+            this.archivedAwards = archivedAwards;
+            this.remainingUsers = remainingUsers;
+            this.duration = duration;
+        }
+
+        public long getSeasonId() {
+            return seasonId;
+        }
+
+        public long getArchivedAwards() {
+            return archivedAwards;
+        }
+
+        public int getRemainingUsers() {
+            return remainingUsers;
+        }
+
+        public Duration getDuration() {
+            return duration;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("season=%d, archived=%d awards, remaining users=%d, took=%d ms",
+                seasonId, archivedAwards, remainingUsers, duration.toMillis());
+        }
+    }
+
+    public static class BackupResult {
+        private final Path file;
+        private final long databaseBytes;
+        private final long compressedBytes;
+        private final Duration duration;
+
+        public BackupResult(Path file, long databaseBytes, long compressedBytes, Duration duration) {
+            this.file = file;
+            this.databaseBytes = databaseBytes;
+            this.compressedBytes = compressedBytes;
+            this.duration = duration;
+        }
+
+        public Path getFile() {
+            return file;
+        }
+
+        public long getDatabaseBytes() {
+            return databaseBytes;
+        }
+
+        public long getCompressedBytes() {
+            return compressedBytes;
+        }
+
+        public Duration getDuration() {
+            return duration;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("file=%s, database=%d bytes, compressed=%d bytes, took=%d ms",
+                file, databaseBytes, compressedBytes, duration.toMillis());
+        }
+    }
+}
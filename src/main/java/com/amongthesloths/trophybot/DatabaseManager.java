@@ -1,77 +1,134 @@
 package com.amongthesloths.trophybot;
 
+import com.amongthesloths.trophybot.models.Page;
 import com.amongthesloths.trophybot.models.Trophy;
 import com.amongthesloths.trophybot.models.UserTrophy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.sql.*;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 
-public class DatabaseManager {
+/**
+ * SQLite implementation of {@link TrophyStore}. Trophies and leaderboards are additionally kept in memory, which is
+ * only correct while this process is the single writer of the database file.
+ */
+public class DatabaseManager implements TrophyStore {
     private static final Logger logger = LoggerFactory.getLogger(DatabaseManager.class);
-    private final Connection connection;
+    private static final Metrics.Histogram QUERY_DURATION = Metrics.histogram(
+        "trophybot_db_query_duration_seconds", "Duration of DatabaseManager calls that hit the database", "method");
+    private static final Metrics.Counter QUERY_ERRORS = Metrics.counter(
+        "trophybot_db_errors_total", "DatabaseManager calls that failed with an SQLException", "method");
+    private final ConnectionPool pool;
+    private final GroupCommitWriter writeQueue;
+    private final TrophyCatalog catalog = new TrophyCatalog();
+    private final Map<String, LeaderboardIndex> leaderboards = new ConcurrentHashMap<>();
+    private final List<ChangeListener> listeners = new CopyOnWriteArrayList<>();
+    private final IdempotencyCache<Boolean> recentAwards = new IdempotencyCache<>(IDEMPOTENCY_ENTRIES);
+    private final IdempotencyCache<BatchAwardResult> recentBulkAwards = new IdempotencyCache<>(IDEMPOTENCY_ENTRIES);
 
-    public DatabaseManager(String url, String user, String password) throws SQLException {
-        logger.info("Initializing database connection to: {}", url);
-        this.connection = DriverManager.getConnection(url, user, password);
-        initializeDatabase();
-    }
+    private static final String INCREMENT_COUNT_SQL =
+        "INSERT INTO user_trophy_counts (guild_id, user_id, trophy_count) VALUES (?, ?, ?) " +
+        "ON CONFLICT(guild_id, user_id) DO UPDATE SET trophy_count = trophy_count + excluded.trophy_count";
+    private static final String DECREMENT_COUNT_SQL =
+        "UPDATE user_trophy_counts SET trophy_count = trophy_count - ? WHERE guild_id = ? AND user_id = ?";
+    private static final String DELETE_EMPTY_COUNT_SQL =
+        "DELETE FROM user_trophy_counts WHERE guild_id = ? AND user_id = ? AND trophy_count <= 0";
+    // Bereits vorhandene Vergaben werden über den Unique-Index übersprungen
+    private static final String INSERT_AWARD_SQL =
+        "INSERT INTO trophy_awards (guild_id, user_id, trophy_id, awarded_by, awarded_at) VALUES (?, ?, ?, ?, ?) " +
+        "ON CONFLICT (guild_id, user_id, trophy_id) DO NOTHING";
+    private static final int IDEMPOTENCY_ENTRIES = 1024;
+    // Spalten für readAwards, die Trophäe selbst kommt aus dem Katalog
+    private static final String AWARD_COLUMNS = "ta.id, ta.user_id, ta.trophy_id, ta.awarded_at, ta.awarded_by";
 
-    private void initializeDatabase() {
-        try {
-            // Read schema.sql from resources
-            try (InputStream is = getClass().getClassLoader().getResourceAsStream("schema.sql")) {
-                if (is == null) {
-                    throw new RuntimeException("Could not find schema.sql in resources");
-                }
+    public DatabaseManager(ConnectionPool pool) throws SQLException {
+        this(pool, "");
+    }
 
-                String schema = new BufferedReader(new InputStreamReader(is))
-                    .lines()
-                    .collect(Collectors.joining("\n"));
+    /**
+     * @param legacyGuildId guild that rows created before guild partitioning are assigned to
+     */
+    public DatabaseManager(ConnectionPool pool, String legacyGuildId) throws SQLException {
+        this(pool, legacyGuildId, GroupCommitWriter.DEFAULT_QUEUE_CAPACITY, GroupCommitWriter.DEFAULT_MAX_BATCH_SIZE,
+            GroupCommitWriter.DEFAULT_MAX_DELAY_MILLIS);
+    }
 
-                // Split the schema into individual statements
-                String[] statements = schema.split(";");
+    /**
+     * @param writeQueueCapacity awards and removals that may wait for the next group commit
+     * @param maxBatchSize       operations applied in one commit at most
+     * @param maxBatchDelayMillis how long the writer waits for more operations before committing
+     */
+    public DatabaseManager(ConnectionPool pool, String legacyGuildId, int writeQueueCapacity, int maxBatchSize,
+                           long maxBatchDelayMillis) throws SQLException {
+        this(pool, legacyGuildId, writeQueueCapacity, maxBatchSize, maxBatchDelayMillis, null);
+    }
 
-                // Execute each statement
-                for (String statement : statements) {
-                    if (!statement.trim().isEmpty()) {
-                        try (Statement stmt = connection.createStatement()) {
-                            stmt.execute(statement);
-                        }
-                    }
-                }
-                logger.info("Database schema initialized successfully");
-            }
-        } catch (IOException | SQLException e) {
-            logger.error("Failed to initialize database schema", e);
-            throw new RuntimeException("Failed to initialize database schema", e);
+    /**
+     * @param warmStart snapshot of catalog and leaderboards from the last clean shutdown, or {@code null}
+     */
+    public DatabaseManager(ConnectionPool pool, String legacyGuildId, int writeQueueCapacity, int maxBatchSize,
+                           long maxBatchDelayMillis, WarmStartSnapshot warmStart) throws SQLException {
+        if (!legacyGuildId.matches("\\d*")) {
+            throw new IllegalArgumentException("Invalid legacy guild id: " + legacyGuildId);
+        }
+        this.pool = pool;
+        int migrations;
+        try (ConnectionPool.Lease lease = pool.acquireWriter()) {
+            migrations = SchemaMigrator.sqlite(legacyGuildId).migrate(lease.getConnection());
         }
+        if (warmStart != null && migrations == 0) {
+            catalog.load(warmStart.getTrophies());
+            loadLeaderboards(warmStart.getCounts());
+            logger.info("Loaded {} trophies and leaderboards of {} guilds from the warm start snapshot",
+                catalog.size(), warmStart.getCounts().size());
+        } else {
+            // Katalog und Leaderboard sind unabhängig und werden parallel geladen
+            FutureTask<List<Trophy>> trophies = new FutureTask<>(this::loadAllTrophies);
+            Thread loader = new Thread(trophies, "trophybot-catalog-loader");
+            loader.setDaemon(true);
+            loader.start();
+            loadLeaderboard();
+            catalog.load(await(trophies));
+            logger.info("Loaded {} trophies into the catalog", catalog.size());
+        }
+        this.writeQueue = new GroupCommitWriter(pool, writeQueueCapacity, maxBatchSize, maxBatchDelayMillis,
+            pool.getAcquireTimeoutMillis());
     }
 
-    public Trophy createTrophy(String name, String description, String emoji, String createdBy) throws SQLException {
-        logger.info("Creating new trophy: {}", name);
-        String sql = "INSERT INTO trophies (name, description, emoji, created_at, created_by) VALUES (?, ?, ?, ?, ?)";
-        try (PreparedStatement statement = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
-            statement.setString(1, name);
-            statement.setString(2, description);
-            statement.setString(3, emoji);
+    @Override
+    public Trophy createTrophy(String guildId, String name, String description, String emoji, String createdBy) throws SQLException {
+        logger.info("Creating new trophy in guild {}: {}", guildId, name);
+        String sql = "INSERT INTO trophies (guild_id, name, description, emoji, created_at, created_by) VALUES (?, ?, ?, ?, ?, ?)";
+        long start = System.nanoTime();
+        try (ConnectionPool.Lease lease = pool.acquireWriter();
+             PreparedStatement statement = lease.getConnection().prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+            statement.setString(1, guildId);
+            statement.setString(2, name);
+            statement.setString(3, description);
+            statement.setString(4, emoji);
             Timestamp createdAt = Timestamp.valueOf(LocalDateTime.now());
-            statement.setTimestamp(4, createdAt);
-            statement.setString(5, createdBy);
+            statement.setTimestamp(5, createdAt);
+            statement.setString(6, createdBy);
             statement.executeUpdate();
 
             try (ResultSet generatedKeys = statement.getGeneratedKeys()) {
                 if (generatedKeys.next()) {
                     int id = generatedKeys.getInt(1);
-                    Trophy trophy = new Trophy(id, name, description, emoji, createdAt.toLocalDateTime(), createdBy);
+                    Trophy trophy = new Trophy(id, guildId, name, description, emoji, createdAt.toLocalDateTime(), createdBy);
+                    catalog.put(trophy);
+                    fireTrophiesChanged(guildId, id);
                     logger.info("Trophy created successfully: {}", trophy);
                     return trophy;
                 } else {
@@ -79,42 +136,152 @@ public class DatabaseManager {
                 }
             }
         } catch (SQLException e) {
+            QUERY_ERRORS.inc("createTrophy");
             logger.error("Failed to create trophy: {}", name, e);
             throw e;
+        } finally {
+            QUERY_DURATION.observeSince(start, "createTrophy");
         }
     }
 
-    public void awardTrophy(String userId, int trophyId, String awardedBy) throws SQLException {
-        logger.info("Awarding trophy {} to user {} by {}", trophyId, userId, awardedBy);
-        String sql = "INSERT INTO trophy_awards (user_id, trophy_id, awarded_by, awarded_at) VALUES (?, ?, ?, ?)";
-        try (PreparedStatement statement = connection.prepareStatement(sql)) {
-            statement.setString(1, userId);
-            statement.setInt(2, trophyId);
-            statement.setString(3, awardedBy);
-            statement.setTimestamp(4, Timestamp.valueOf(LocalDateTime.now()));
-            statement.executeUpdate();
-            logger.info("Trophy awarded successfully");
+    @Override
+    public boolean awardTrophy(String guildId, String userId, int trophyId, String awardedBy, String idempotencyKey) throws SQLException {
+        Boolean previous = recentAwards.get(idempotencyKey);
+        if (previous != null) {
+            logger.info("Ignoring repeated award request {}", idempotencyKey);
+            return previous;
+        }
+
+        logger.info("Awarding trophy {} to user {} by {} in guild {}", trophyId, userId, awardedBy, guildId);
+        long start = System.nanoTime();
+        try {
+            boolean inserted = writeQueue.execute(connection -> {
+                try (PreparedStatement statement = connection.prepareStatement(INSERT_AWARD_SQL)) {
+                    statement.setString(1, guildId);
+                    statement.setString(2, userId);
+                    statement.setInt(3, trophyId);
+                    statement.setString(4, awardedBy);
+                    statement.setTimestamp(5, Timestamp.valueOf(LocalDateTime.now()));
+                    if (statement.executeUpdate() == 0) {
+                        return false;
+                    }
+                }
+                try (PreparedStatement countStatement = connection.prepareStatement(INCREMENT_COUNT_SQL)) {
+                    countStatement.setString(1, guildId);
+                    countStatement.setString(2, userId);
+                    countStatement.setInt(3, 1);
+                    countStatement.executeUpdate();
+                }
+                return true;
+            }, committed -> {
+                recentAwards.put(idempotencyKey, committed);
+                if (committed) {
+                    leaderboard(guildId).adjust(Long.parseLong(userId), 1);
+                    fireAwardsChanged(guildId, trophyId, List.of(userId));
+                }
+            });
+            if (inserted) {
+                logger.info("Trophy awarded successfully");
+            } else {
+                logger.info("User {} already has trophy {}", userId, trophyId);
+            }
+            return inserted;
         } catch (SQLException e) {
+            QUERY_ERRORS.inc("awardTrophy");
             logger.error("Failed to award trophy {} to user {}", trophyId, userId, e);
             throw e;
+        } finally {
+            QUERY_DURATION.observeSince(start, "awardTrophy");
+        }
+    }
+
+    @Override
+    public BatchAwardResult awardTrophies(String guildId, Collection<String> userIds, int trophyId, String awardedBy,
+                                          String idempotencyKey) throws SQLException {
+        BatchAwardResult previous = recentBulkAwards.get(idempotencyKey);
+        if (previous != null) {
+            logger.info("Ignoring repeated bulk award request {}", idempotencyKey);
+            return previous;
+        }
+
+        logger.info("Awarding trophy {} to {} users by {} in guild {}", trophyId, userIds.size(), awardedBy, guildId);
+        List<String> candidates = new ArrayList<>(new LinkedHashSet<>(userIds));
+        long start = System.nanoTime();
+        try {
+            List<String> awarded = writeQueue.execute(connection -> {
+                if (candidates.isEmpty()) {
+                    return List.of();
+                }
+
+                int[] results;
+                Timestamp awardedAt = Timestamp.valueOf(LocalDateTime.now());
+                try (PreparedStatement statement = connection.prepareStatement(INSERT_AWARD_SQL)) {
+                    for (String userId : candidates) {
+                        statement.setString(1, guildId);
+                        statement.setString(2, userId);
+                        statement.setInt(3, trophyId);
+                        statement.setString(4, awardedBy);
+                        statement.setTimestamp(5, awardedAt);
+                        statement.addBatch();
+                    }
+                    results = statement.executeBatch();
+                }
+
+                List<String> inserted = new ArrayList<>();
+                try (PreparedStatement countStatement = connection.prepareStatement(INCREMENT_COUNT_SQL)) {
+                    for (int i = 0; i < results.length; i++) {
+                        if (results[i] > 0) {
+                            String userId = candidates.get(i);
+                            inserted.add(userId);
+                            countStatement.setString(1, guildId);
+                            countStatement.setString(2, userId);
+                            countStatement.setInt(3, 1);
+                            countStatement.addBatch();
+                        }
+                    }
+                    if (!inserted.isEmpty()) {
+                        countStatement.executeBatch();
+                    }
+                }
+                return inserted;
+            }, committed -> {
+                LeaderboardIndex leaderboard = leaderboard(guildId);
+                for (String userId : committed) {
+                    leaderboard.adjust(Long.parseLong(userId), 1);
+                }
+                if (!committed.isEmpty()) {
+                    fireAwardsChanged(guildId, trophyId, committed);
+                }
+                recentBulkAwards.put(idempotencyKey,
+                    new BatchAwardResult(committed.size(), candidates.size() - committed.size()));
+            });
+
+            BatchAwardResult result = new BatchAwardResult(awarded.size(), candidates.size() - awarded.size());
+            logger.info("Bulk award of trophy {} finished: {}", trophyId, result);
+            return result;
+        } catch (SQLException e) {
+            QUERY_ERRORS.inc("awardTrophies");
+            logger.error("Failed to bulk award trophy {} to {} users", trophyId, userIds.size(), e);
+            throw e;
+        } finally {
+            QUERY_DURATION.observeSince(start, "awardTrophies");
         }
     }
 
-    public List<Trophy> getAllTrophies() throws SQLException {
+    @Override
+    public List<Trophy> getAllTrophies(String guildId) throws SQLException {
+        return catalog.getAll(guildId);
+    }
+
+    private List<Trophy> loadAllTrophies() throws SQLException {
         logger.debug("Fetching all trophies");
         List<Trophy> trophies = new ArrayList<>();
         String sql = "SELECT * FROM trophies ORDER BY id";
-        try (Statement statement = connection.createStatement();
+        try (ConnectionPool.Lease lease = pool.acquireReader();
+             Statement statement = lease.getConnection().createStatement();
              ResultSet resultSet = statement.executeQuery(sql)) {
             while (resultSet.next()) {
-                trophies.add(new Trophy(
-                    resultSet.getInt("id"),
-                    resultSet.getString("name"),
-                    resultSet.getString("description"),
-                    resultSet.getString("emoji"),
-                    resultSet.getTimestamp("created_at").toLocalDateTime(),
-                    resultSet.getString("created_by")
-                ));
+                trophies.add(readTrophy(resultSet));
             }
             logger.debug("Retrieved {} trophies", trophies.size());
             return trophies;
@@ -124,157 +291,537 @@ public class DatabaseManager {
         }
     }
 
-    public List<UserTrophy> getUserTrophies(String userId) throws SQLException {
-        logger.debug("Fetching trophies for user {}", userId);
+    @Override
+    public List<UserTrophy> getUserTrophies(String guildId, String userId) throws SQLException {
         List<UserTrophy> userTrophies = new ArrayList<>();
-        String sql = "SELECT t.*, ta.awarded_at, ta.awarded_by FROM trophies t " +
-                    "JOIN trophy_awards ta ON t.id = ta.trophy_id " +
-                    "WHERE ta.user_id = ? " +
+        streamUserTrophies(guildId, userId, (awardId, user, trophy, awardedAt, awardedBy) ->
+            userTrophies.add(new UserTrophy(awardId, user, trophy, awardedAt, awardedBy)));
+        return userTrophies;
+    }
+
+    @Override
+    public int streamUserTrophies(String guildId, String userId, AwardRowConsumer consumer) throws SQLException {
+        logger.debug("Fetching trophies for user {} in guild {}", userId, guildId);
+        String sql = "SELECT " + AWARD_COLUMNS + " FROM trophy_awards ta " +
+                    "WHERE ta.guild_id = ? AND ta.user_id = ? " +
                     "ORDER BY ta.awarded_at DESC";
-        try (PreparedStatement statement = connection.prepareStatement(sql)) {
-            statement.setString(1, userId);
-            try (ResultSet resultSet = statement.executeQuery()) {
-                while (resultSet.next()) {
-                    Trophy trophy = new Trophy(
-                        resultSet.getInt("id"),
-                        resultSet.getString("name"),
-                        resultSet.getString("description"),
-                        resultSet.getString("emoji"),
-                        resultSet.getTimestamp("created_at").toLocalDateTime(),
-                        resultSet.getString("created_by")
-                    );
-                    Timestamp awardedAt = resultSet.getTimestamp("awarded_at");
-                    String awardedBy = resultSet.getString("awarded_by");
-                    userTrophies.add(new UserTrophy(trophy, awardedAt, awardedBy));
-                }
-            }
-            logger.debug("Retrieved {} trophies for user {}", userTrophies.size(), userId);
-            return userTrophies;
+        long start = System.nanoTime();
+        try (ConnectionPool.Lease lease = pool.acquireReader();
+             PreparedStatement statement = lease.getConnection().prepareStatement(sql)) {
+            statement.setString(1, guildId);
+            statement.setString(2, userId);
+            int rows = readAwards(lease.getConnection(), guildId, statement, consumer);
+            logger.debug("Retrieved {} trophies for user {}", rows, userId);
+            return rows;
         } catch (SQLException e) {
+            QUERY_ERRORS.inc("getUserTrophies");
             logger.error("Failed to fetch trophies for user {}", userId, e);
             throw e;
+        } finally {
+            QUERY_DURATION.observeSince(start, "getUserTrophies");
+        }
+    }
+
+    @Override
+    public List<Trophy> searchTrophies(String guildId, String query, int limit) {
+        return catalog.search(guildId, query, limit);
+    }
+
+    @Override
+    public Page<Trophy> getTrophyPage(String guildId, int cursor, boolean forward, int limit) throws SQLException {
+        return catalog.page(guildId, cursor, forward, limit);
+    }
+
+    @Override
+    public Page<UserTrophy> getTrophyWinnersPage(String guildId, int trophyId, long cursor, boolean forward, int limit) throws SQLException {
+        logger.debug("Fetching winners page of trophy {} (cursor={}, forward={})", trophyId, cursor, forward);
+        return queryAwardPage("getTrophyWinnersPage", guildId, "ta.trophy_id", trophyId, cursor, forward, limit);
+    }
+
+    @Override
+    public Page<UserTrophy> getUserTrophiesPage(String guildId, String userId, long cursor, boolean forward, int limit) throws SQLException {
+        logger.debug("Fetching trophy page of user {} (cursor={}, forward={})", userId, cursor, forward);
+        return queryAwardPage("getUserTrophiesPage", guildId, "ta.user_id", userId, cursor, forward, limit);
+    }
+
+    /**
+     * Seeks through trophy_awards newest first using the award id as cursor. A cursor of 0 starts at the newest award,
+     * forward pages go to older awards and backward pages to newer ones.
+     */
+    private Page<UserTrophy> queryAwardPage(String method, String guildId, String column, Object key, long cursor,
+                                            boolean forward, int limit) throws SQLException {
+        String sql = "SELECT " + AWARD_COLUMNS + " FROM trophy_awards ta " +
+                    "WHERE ta.guild_id = ? AND " + column + " = ?" +
+                    (forward ? " AND ta.id < ? ORDER BY ta.id DESC" : " AND ta.id > ? ORDER BY ta.id ASC") +
+                    " LIMIT ?";
+        List<UserTrophy> rows = new ArrayList<>(limit + 1);
+        long start = System.nanoTime();
+        try (ConnectionPool.Lease lease = pool.acquireReader();
+             PreparedStatement statement = lease.getConnection().prepareStatement(sql)) {
+            statement.setString(1, guildId);
+            statement.setObject(2, key);
+            statement.setLong(3, forward && cursor == 0 ? Long.MAX_VALUE : cursor);
+            statement.setInt(4, limit + 1);
+            readAwards(lease.getConnection(), guildId, statement, (awardId, userId, trophy, awardedAt, awardedBy) ->
+                rows.add(new UserTrophy(awardId, userId, trophy, awardedAt, awardedBy)));
+        } catch (SQLException e) {
+            QUERY_ERRORS.inc(method);
+            logger.error("Failed to fetch award page ({} = {})", column, key, e);
+            throw e;
+        } finally {
+            QUERY_DURATION.observeSince(start, method);
         }
+        if (!forward) {
+            Collections.reverse(rows);
+        }
+        return Page.fromSeek(rows, limit, forward, cursor > 0);
     }
 
-    public Trophy getTrophyById(int trophyId) throws SQLException {
+    @Override
+    public Trophy getTrophyById(String guildId, int trophyId) throws SQLException {
+        Trophy cached = catalog.get(guildId, trophyId);
+        if (cached != null) {
+            return cached;
+        }
+
         logger.debug("Fetching trophy with ID: {}", trophyId);
-        String sql = "SELECT * FROM trophies WHERE id = ?";
-        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+        String sql = "SELECT * FROM trophies WHERE id = ? AND guild_id = ?";
+        long start = System.nanoTime();
+        try (ConnectionPool.Lease lease = pool.acquireReader();
+             PreparedStatement statement = lease.getConnection().prepareStatement(sql)) {
             statement.setInt(1, trophyId);
+            statement.setString(2, guildId);
             try (ResultSet resultSet = statement.executeQuery()) {
                 if (resultSet.next()) {
-                    return new Trophy(
-                        resultSet.getInt("id"),
-                        resultSet.getString("name"),
-                        resultSet.getString("description"),
-                        resultSet.getString("emoji"),
-                        resultSet.getTimestamp("created_at").toLocalDateTime(),
-                        resultSet.getString("created_by")
-                    );
+                    Trophy trophy = readTrophy(resultSet);
+                    catalog.put(trophy);
+                    return trophy;
                 } else {
                     logger.warn("No trophy found with ID: {}", trophyId);
                     return null;
                 }
             }
         } catch (SQLException e) {
+            QUERY_ERRORS.inc("getTrophyById");
             logger.error("Failed to fetch trophy with ID: {}", trophyId, e);
             throw e;
+        } finally {
+            QUERY_DURATION.observeSince(start, "getTrophyById");
         }
     }
 
-    public List<UserTrophy> getUsersWithTrophy(int trophyId) throws SQLException {
-        logger.debug("Fetching users with trophy ID: {}", trophyId);
+    @Override
+    public List<UserTrophy> getUsersWithTrophy(String guildId, int trophyId) throws SQLException {
         List<UserTrophy> userTrophies = new ArrayList<>();
-        String sql = "SELECT t.*, ta.awarded_at, ta.awarded_by FROM trophies t " +
-                    "JOIN trophy_awards ta ON t.id = ta.trophy_id " +
-                    "WHERE t.id = ? " +
+        streamTrophyWinners(guildId, trophyId, (awardId, userId, trophy, awardedAt, awardedBy) ->
+            userTrophies.add(new UserTrophy(awardId, userId, trophy, awardedAt, awardedBy)));
+        return userTrophies;
+    }
+
+    @Override
+    public int streamTrophyWinners(String guildId, int trophyId, AwardRowConsumer consumer) throws SQLException {
+        logger.debug("Fetching users with trophy ID: {}", trophyId);
+        String sql = "SELECT " + AWARD_COLUMNS + " FROM trophy_awards ta " +
+                    "WHERE ta.guild_id = ? AND ta.trophy_id = ? " +
                     "ORDER BY ta.awarded_at DESC";
-        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+        long start = System.nanoTime();
+        try (ConnectionPool.Lease lease = pool.acquireReader();
+             PreparedStatement statement = lease.getConnection().prepareStatement(sql)) {
+            statement.setString(1, guildId);
+            statement.setInt(2, trophyId);
+            int rows = readAwards(lease.getConnection(), guildId, statement, consumer);
+            logger.debug("Retrieved {} users with trophy ID: {}", rows, trophyId);
+            return rows;
+        } catch (SQLException e) {
+            QUERY_ERRORS.inc("getUsersWithTrophy");
+            logger.error("Failed to fetch users with trophy ID: {}", trophyId, e);
+            throw e;
+        } finally {
+            QUERY_DURATION.observeSince(start, "getUsersWithTrophy");
+        }
+    }
+
+    /**
+     * Maps award rows selected with {@link #AWARD_COLUMNS}. Trophies come from the catalog and are shared between rows;
+     * one missing from the catalog is loaded once on the same connection.
+     */
+    private int readAwards(Connection connection, String guildId, PreparedStatement statement,
+                           AwardRowConsumer consumer) throws SQLException {
+        int rows = 0;
+        Trophy trophy = null;
+        try (ResultSet resultSet = statement.executeQuery()) {
+            while (resultSet.next()) {
+                int trophyId = resultSet.getInt(3);
+                if (trophy == null || trophy.getId() != trophyId) {
+                    trophy = resolveTrophy(connection, guildId, trophyId);
+                }
+                Timestamp awardedAt = resultSet.getTimestamp(4);
+                consumer.accept(
+                    resultSet.getLong(1),
+                    resultSet.getLong(2),
+                    trophy,
+                    awardedAt != null ? awardedAt.getTime() : UserTrophy.UNKNOWN_DATE,
+                    resultSet.getLong(5)
+                );
+                rows++;
+            }
+        }
+        return rows;
+    }
+
+    private Trophy resolveTrophy(Connection connection, String guildId, int trophyId) throws SQLException {
+        Trophy trophy = catalog.get(guildId, trophyId);
+        if (trophy != null) {
+            return trophy;
+        }
+        try (PreparedStatement statement = connection.prepareStatement("SELECT * FROM trophies WHERE id = ? AND guild_id = ?")) {
             statement.setInt(1, trophyId);
+            statement.setString(2, guildId);
             try (ResultSet resultSet = statement.executeQuery()) {
-                while (resultSet.next()) {
-                    Trophy trophy = new Trophy(
-                        resultSet.getInt("id"),
-                        resultSet.getString("name"),
-                        resultSet.getString("description"),
-                        resultSet.getString("emoji"),
-                        resultSet.getTimestamp("created_at").toLocalDateTime(),
-                        resultSet.getString("created_by")
-                    );
-                    userTrophies.add(new UserTrophy(
-                        trophy,
-                        resultSet.getTimestamp("awarded_at"),
-                        resultSet.getString("awarded_by")
-                    ));
+                if (!resultSet.next()) {
+                    throw new SQLException("Award references unknown trophy " + trophyId);
                 }
+                trophy = readTrophy(resultSet);
             }
-            logger.debug("Retrieved {} users with trophy ID: {}", userTrophies.size(), trophyId);
-            return userTrophies;
-        } catch (SQLException e) {
-            logger.error("Failed to fetch users with trophy ID: {}", trophyId, e);
-            throw e;
         }
+        catalog.put(trophy);
+        return trophy;
+    }
+
+    private static Trophy readTrophy(ResultSet resultSet) throws SQLException {
+        return new Trophy(
+            resultSet.getInt("id"),
+            resultSet.getString("guild_id"),
+            resultSet.getString("name"),
+            resultSet.getString("description"),
+            resultSet.getString("emoji"),
+            resultSet.getTimestamp("created_at").toLocalDateTime(),
+            resultSet.getString("created_by")
+        );
+    }
+
+    @Override
+    public void addChangeListener(ChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    private void fireTrophiesChanged(String guildId, int trophyId) {
+        for (ChangeListener listener : listeners) {
+            listener.trophiesChanged(guildId, trophyId);
+        }
+    }
+
+    private void fireAwardsChanged(String guildId, int trophyId, Collection<String> userIds) {
+        for (ChangeListener listener : listeners) {
+            listener.awardsChanged(guildId, trophyId, userIds);
+        }
+    }
+
+    private void fireGuildReloaded(String guildId) {
+        for (ChangeListener listener : listeners) {
+            listener.guildReloaded(guildId);
+        }
+    }
+
+    public ConnectionPool getPool() {
+        return pool;
     }
 
+    public GroupCommitWriter getWriteQueue() {
+        return writeQueue;
+    }
+
+    public TrophyCatalog getCatalog() {
+        return catalog;
+    }
+
+    @Override
     public void close() {
         logger.info("Closing database connection");
+        logger.info("Connection pool stats - writer: {}, readers: {}", pool.getWriterStats(), pool.getReaderStats());
+        logger.info("Trophy catalog stats - {}", catalog);
+        writeQueue.close();
+        pool.close();
+        logger.info("Database connection closed successfully");
+    }
+
+    @Override
+    public List<UserTrophyCount> getLeaderboard(String guildId, int limit) throws SQLException {
+        logger.debug("Fetching leaderboard of guild {} with limit: {}", guildId, limit);
+        return leaderboard(guildId).top(limit);
+    }
+
+    @Override
+    public int getLeaderboardRank(String guildId, String userId) {
+        return leaderboard(guildId).rank(Long.parseLong(userId));
+    }
+
+    @Override
+    public int getTrophyCount(String guildId, String userId) {
+        return leaderboard(guildId).count(Long.parseLong(userId));
+    }
+
+    /**
+     * Trophy counts per guild and user as currently held in memory.
+     */
+    public Map<String, Map<Long, Integer>> getLeaderboardCounts() {
+        Map<String, Map<Long, Integer>> counts = new HashMap<>();
+        for (Map.Entry<String, LeaderboardIndex> entry : leaderboards.entrySet()) {
+            counts.put(entry.getKey(), entry.getValue().counts());
+        }
+        return counts;
+    }
+
+    private static <T> T await(FutureTask<T> task) throws SQLException {
         try {
-            if (connection != null && !connection.isClosed()) {
-                connection.close();
-                logger.info("Database connection closed successfully");
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while loading from the database", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof SQLException) {
+                throw (SQLException) e.getCause();
             }
-        } catch (SQLException e) {
-            logger.error("Failed to close database connection", e);
+            throw new SQLException(e.getCause());
         }
     }
 
-    public static class UserTrophyCount {
-        private final long userId;
-        private final int count;
+    private LeaderboardIndex leaderboard(String guildId) {
+        return leaderboards.computeIfAbsent(guildId, id -> new LeaderboardIndex());
+    }
 
-        public UserTrophyCount(long userId, int count) {
-            this.userId = userId;
-            this.count = count;
+    private void loadLeaderboards(Map<String, Map<Long, Integer>> counts) {
+        leaderboards.keySet().retainAll(counts.keySet());
+        for (Map.Entry<String, Map<Long, Integer>> entry : counts.entrySet()) {
+            leaderboard(entry.getKey()).load(entry.getValue());
         }
+    }
 
-        public long getUserId() {
-            return userId;
+    private void loadLeaderboard() throws SQLException {
+        logger.debug("Loading leaderboard counts");
+        Map<String, Map<Long, Integer>> counts;
+        boolean hasAwards;
+        try (ConnectionPool.Lease lease = pool.acquireReader();
+             Statement statement = lease.getConnection().createStatement()) {
+            counts = readCounts(statement);
+            try (ResultSet resultSet = statement.executeQuery("SELECT 1 FROM trophy_awards LIMIT 1")) {
+                hasAwards = resultSet.next();
+            }
+        } catch (SQLException e) {
+            logger.error("Failed to load leaderboard counts", e);
+            throw e;
         }
 
-        public int getCount() {
-            return count;
+        if (counts.isEmpty() && hasAwards) {
+            // Bestehende Datenbank von vor der Zähltabelle
+            logger.info("Leaderboard counts are empty but awards exist, rebuilding");
+            rebuildLeaderboard();
+            return;
         }
+        loadLeaderboards(counts);
+        logger.info("Loaded leaderboards of {} guilds", counts.size());
     }
 
-    public List<UserTrophyCount> getLeaderboard(int limit) throws SQLException {
-        logger.debug("Fetching leaderboard with limit: {}", limit);
-        List<UserTrophyCount> leaderboard = new ArrayList<>();
-        String sql = "SELECT user_id, COUNT(*) as count FROM trophy_awards GROUP BY user_id ORDER BY count DESC LIMIT ?";
-        try (PreparedStatement statement = connection.prepareStatement(sql)) {
-            statement.setInt(1, limit);
-            try (ResultSet resultSet = statement.executeQuery()) {
-                while (resultSet.next()) {
-                    leaderboard.add(new UserTrophyCount(
-                        resultSet.getLong("user_id"),
-                        resultSet.getInt("count")
-                    ));
+    // Lädt danach auch die Leaderboards im Speicher neu
+    @Override
+    public int rebuildLeaderboard() throws SQLException {
+        logger.info("Rebuilding leaderboard counts");
+        long start = System.nanoTime();
+        try {
+            Map<String, Map<Long, Integer>> counts = inWriteTransaction(connection -> {
+                try (Statement statement = connection.createStatement()) {
+                    statement.executeUpdate("DELETE FROM user_trophy_counts");
+                    statement.executeUpdate("INSERT INTO user_trophy_counts (guild_id, user_id, trophy_count) " +
+                        "SELECT guild_id, user_id, COUNT(*) FROM trophy_awards GROUP BY guild_id, user_id");
+                    return readCounts(statement);
                 }
+            });
+            loadLeaderboards(counts);
+            for (ChangeListener listener : listeners) {
+                listener.dataReloaded();
             }
-            logger.debug("Retrieved leaderboard with {} entries", leaderboard.size());
-            return leaderboard;
+            int users = counts.values().stream().mapToInt(Map::size).sum();
+            logger.info("Leaderboard rebuilt with {} users in {} guilds", users, counts.size());
+            return users;
         } catch (SQLException e) {
-            logger.error("Failed to fetch leaderboard", e);
+            QUERY_ERRORS.inc("rebuildLeaderboard");
+            logger.error("Failed to rebuild leaderboard", e);
             throw e;
+        } finally {
+            QUERY_DURATION.observeSince(start, "rebuildLeaderboard");
         }
     }
 
-    public void removeTrophy(String userId, int trophyId) throws SQLException {
-        logger.info("Removing trophy {} from user {}", trophyId, userId);
-        String sql = "DELETE FROM trophy_awards WHERE user_id = ? AND trophy_id = ?";
-        try (PreparedStatement statement = connection.prepareStatement(sql)) {
-            statement.setString(1, userId);
-            statement.setInt(2, trophyId);
-            int rowsAffected = statement.executeUpdate();
+    @Override
+    public int rebuildLeaderboard(String guildId) throws SQLException {
+        logger.info("Rebuilding leaderboard counts of guild {}", guildId);
+        long start = System.nanoTime();
+        try {
+            Map<Long, Integer> counts = inWriteTransaction(connection -> {
+                try (PreparedStatement delete = connection.prepareStatement(
+                         "DELETE FROM user_trophy_counts WHERE guild_id = ?");
+                     PreparedStatement insert = connection.prepareStatement(
+                         "INSERT INTO user_trophy_counts (guild_id, user_id, trophy_count) " +
+                         "SELECT guild_id, user_id, COUNT(*) FROM trophy_awards WHERE guild_id = ? GROUP BY guild_id, user_id");
+                     PreparedStatement select = connection.prepareStatement(
+                         "SELECT user_id, trophy_count FROM user_trophy_counts WHERE guild_id = ?")) {
+                    delete.setString(1, guildId);
+                    delete.executeUpdate();
+                    insert.setString(1, guildId);
+                    insert.executeUpdate();
+                    select.setString(1, guildId);
+                    Map<Long, Integer> guildCounts = new HashMap<>();
+                    try (ResultSet resultSet = select.executeQuery()) {
+                        while (resultSet.next()) {
+                            guildCounts.put(resultSet.getLong("user_id"), resultSet.getInt("trophy_count"));
+                        }
+                    }
+                    return guildCounts;
+                }
+            });
+            leaderboard(guildId).load(counts);
+            fireGuildReloaded(guildId);
+            logger.info("Leaderboard of guild {} rebuilt with {} users", guildId, counts.size());
+            return counts.size();
+        } catch (SQLException e) {
+            QUERY_ERRORS.inc("rebuildLeaderboard");
+            logger.error("Failed to rebuild leaderboard of guild {}", guildId, e);
+            throw e;
+        } finally {
+            QUERY_DURATION.observeSince(start, "rebuildLeaderboard");
+        }
+    }
+
+    @Override
+    public SeasonArchive startSeasonArchive(String guildId, String endedBy) throws SQLException {
+        logger.info("Starting season archive of guild {} by {}", guildId, endedBy);
+        return inWriteTransaction(connection -> {
+            long maxAwardId;
+            long awardCount;
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "SELECT COALESCE(MAX(id), 0), COUNT(*) FROM trophy_awards WHERE guild_id = ?")) {
+                statement.setString(1, guildId);
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    resultSet.next();
+                    maxAwardId = resultSet.getLong(1);
+                    awardCount = resultSet.getLong(2);
+                }
+            }
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "INSERT INTO seasons (guild_id, ended_at, ended_by) VALUES (?, ?, ?)", Statement.RETURN_GENERATED_KEYS)) {
+                statement.setString(1, guildId);
+                statement.setTimestamp(2, Timestamp.valueOf(LocalDateTime.now()));
+                statement.setString(3, endedBy);
+                statement.executeUpdate();
+                try (ResultSet generatedKeys = statement.getGeneratedKeys()) {
+                    if (!generatedKeys.next()) {
+                        throw new SQLException("Creating season failed, no ID obtained.");
+                    }
+                    return new SeasonArchive(generatedKeys.getLong(1), guildId, maxAwardId, awardCount);
+                }
+            }
+        });
+    }
+
+    @Override
+    public int archiveAwards(SeasonArchive season, int limit) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            return inWriteTransaction(connection -> {
+                long upperId;
+                try (PreparedStatement statement = connection.prepareStatement(
+                        "SELECT MAX(id) FROM (SELECT id FROM trophy_awards WHERE guild_id = ? AND id <= ? ORDER BY id LIMIT ?)")) {
+                    statement.setString(1, season.getGuildId());
+                    statement.setLong(2, season.getMaxAwardId());
+                    statement.setInt(3, limit);
+                    try (ResultSet resultSet = statement.executeQuery()) {
+                        resultSet.next();
+                        upperId = resultSet.getLong(1);
+                        if (resultSet.wasNull()) {
+                            return 0;
+                        }
+                    }
+                }
+                try (PreparedStatement archive = connection.prepareStatement(
+                         "INSERT INTO trophy_awards_archive (season_id, award_id, guild_id, trophy_id, user_id, awarded_by, awarded_at) " +
+                         "SELECT ?, id, guild_id, trophy_id, user_id, awarded_by, awarded_at FROM trophy_awards " +
+                         "WHERE guild_id = ? AND id <= ?");
+                     PreparedStatement delete = connection.prepareStatement(
+                         "DELETE FROM trophy_awards WHERE guild_id = ? AND id <= ?")) {
+                    archive.setLong(1, season.getId());
+                    archive.setString(2, season.getGuildId());
+                    archive.setLong(3, upperId);
+                    archive.executeUpdate();
+                    delete.setString(1, season.getGuildId());
+                    delete.setLong(2, upperId);
+                    return delete.executeUpdate();
+                }
+            });
+        } catch (SQLException e) {
+            QUERY_ERRORS.inc("archiveAwards");
+            logger.error("Failed to archive awards of season {}", season.getId(), e);
+            throw e;
+        } finally {
+            QUERY_DURATION.observeSince(start, "archiveAwards");
+        }
+    }
+
+    private static Map<String, Map<Long, Integer>> readCounts(Statement statement) throws SQLException {
+        Map<String, Map<Long, Integer>> counts = new HashMap<>();
+        try (ResultSet resultSet = statement.executeQuery("SELECT guild_id, user_id, trophy_count FROM user_trophy_counts")) {
+            while (resultSet.next()) {
+                counts.computeIfAbsent(resultSet.getString("guild_id"), id -> new HashMap<>())
+                    .put(resultSet.getLong("user_id"), resultSet.getInt("trophy_count"));
+            }
+        }
+        return counts;
+    }
+
+    private <T> T inWriteTransaction(TransactionWork<T> work) throws SQLException {
+        try (ConnectionPool.Lease lease = pool.acquireWriter()) {
+            Connection connection = lease.getConnection();
+            connection.setAutoCommit(false);
+            try {
+                T result = work.run(connection);
+                connection.commit();
+                return result;
+            } catch (SQLException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface TransactionWork<T> {
+        T run(Connection connection) throws SQLException;
+    }
+
+    @Override
+    public void removeTrophy(String guildId, String userId, int trophyId) throws SQLException {
+        logger.info("Removing trophy {} from user {} in guild {}", trophyId, userId, guildId);
+        String sql = "DELETE FROM trophy_awards WHERE guild_id = ? AND user_id = ? AND trophy_id = ?";
+        long start = System.nanoTime();
+        try {
+            int rowsAffected = writeQueue.execute(connection -> {
+                try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                    statement.setString(1, guildId);
+                    statement.setString(2, userId);
+                    statement.setInt(3, trophyId);
+                    int deleted = statement.executeUpdate();
+                    if (deleted > 0) {
+                        decrementCount(connection, guildId, userId, deleted);
+                    }
+                    return deleted;
+                }
+            }, deleted -> {
+                if (deleted > 0) {
+                    leaderboard(guildId).adjust(Long.parseLong(userId), -deleted);
+                    fireAwardsChanged(guildId, trophyId, List.of(userId));
+                }
+            });
             if (rowsAffected > 0) {
                 logger.info("Trophy removed successfully");
             } else {
@@ -282,8 +829,24 @@ public class DatabaseManager {
                 throw new SQLException("Trophy not found for this user");
             }
         } catch (SQLException e) {
+            QUERY_ERRORS.inc("removeTrophy");
             logger.error("Failed to remove trophy {} from user {}", trophyId, userId, e);
             throw e;
+        } finally {
+            QUERY_DURATION.observeSince(start, "removeTrophy");
+        }
+    }
+
+    private void decrementCount(Connection connection, String guildId, String userId, int amount) throws SQLException {
+        try (PreparedStatement update = connection.prepareStatement(DECREMENT_COUNT_SQL);
+             PreparedStatement cleanup = connection.prepareStatement(DELETE_EMPTY_COUNT_SQL)) {
+            update.setInt(1, amount);
+            update.setString(2, guildId);
+            update.setString(3, userId);
+            update.executeUpdate();
+            cleanup.setString(1, guildId);
+            cleanup.setString(2, userId);
+            cleanup.executeUpdate();
         }
     }
-} 
\ No newline at end of file
+}
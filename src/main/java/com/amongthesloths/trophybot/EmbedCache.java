@@ -0,0 +1,238 @@
+package com.amongthesloths.trophybot;
+
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Size-bounded LRU cache for rendered views (embeds, message data, leaderboard text).
+ * Every key carries the version of the data it was rendered from. Writes only bump versions, so stale entries are
+ * never returned again and simply fall out of the LRU. Versions live in a fixed array of counters indexed by the hash
+ * of the scope, so they take constant memory however many users are seen; scopes sharing a counter only cause an
+ * occasional extra render.
+ */
+public class EmbedCache implements TrophyStore.ChangeListener {
+    public enum View {
+        TROPHY,
+        TROPHY_DETAIL,
+        TROPHY_LIST,
+        WINNERS,
+        PROFILE,
+        LEADERBOARD
+    }
+
+    @FunctionalInterface
+    public interface Loader<T> {
+        T load() throws SQLException;
+    }
+
+    private volatile int maxEntries;
+    private final LinkedHashMap<Key, Object> entries;
+    private static final int MAX_VERSION_SLOTS = 1 << 16;
+
+    private final AtomicLongArray versions;
+    private final AtomicLong epoch = new AtomicLong();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public EmbedCache(int maxEntries) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("maxEntries must be positive");
+        }
+        this.maxEntries = maxEntries;
+        // Zwei Zähler pro Eintrag reichen, damit sich kaum zwei zwischengespeicherte Ansichten einen teilen
+        this.versions = new AtomicLongArray(Math.min(MAX_VERSION_SLOTS, Integer.highestOneBit(maxEntries) * 4));
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Object> eldest) {
+                if (size() > EmbedCache.this.maxEntries) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Returns the cached rendering of a view or renders it with the loader. The version is read before loading, so a
+     * write that commits while the loader runs leaves the result under an already outdated key.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(View view, String guildId, String entityId, String variant, Loader<T> loader) throws SQLException {
+        Key key = new Key(view, guildId, entityId, variant, version(view, guildId, entityId));
+        synchronized (entries) {
+            Object cached = entries.get(key);
+            if (cached != null) {
+                hits.incrementAndGet();
+                return (T) cached;
+            }
+        }
+
+        misses.incrementAndGet();
+        T rendered = loader.load();
+        if (rendered != null) {
+            synchronized (entries) {
+                entries.put(key, rendered);
+            }
+        }
+        return rendered;
+    }
+
+    /**
+     * Changes the size limit at runtime, evicting the least recently used entries if the cache is now too large.
+     */
+    public void setMaxEntries(int maxEntries) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("maxEntries must be positive");
+        }
+        this.maxEntries = maxEntries;
+        synchronized (entries) {
+            Iterator<Key> eldest = entries.keySet().iterator();
+            while (entries.size() > maxEntries && eldest.hasNext()) {
+                eldest.next();
+                eldest.remove();
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    // Die Versionen sind monoton steigend, daher ändert sich auch ihre Summe bei jeder Invalidierung
+    private long version(View view, String guildId, String entityId) {
+        long version = epoch.get() + current("guild:" + guildId);
+        switch (view) {
+            case TROPHY:
+                version += current("trophy:" + guildId + ":" + entityId);
+                break;
+            case TROPHY_DETAIL:
+            case WINNERS:
+                version += current("trophy:" + guildId + ":" + entityId) + current("winners:" + guildId + ":" + entityId)
+                    + current("names:" + guildId);
+                break;
+            case TROPHY_LIST:
+                version += current("trophies:" + guildId);
+                break;
+            case PROFILE:
+                version += current("user:" + guildId + ":" + entityId) + current("trophies:" + guildId);
+                break;
+            case LEADERBOARD:
+                version += current("leaderboard:" + guildId) + current("names:" + guildId);
+                break;
+        }
+        return version;
+    }
+
+    private long current(String scope) {
+        return versions.get(slot(scope));
+    }
+
+    private void bump(String scope) {
+        versions.incrementAndGet(slot(scope));
+    }
+
+    private int slot(String scope) {
+        int hash = scope.hashCode();
+        return (hash ^ (hash >>> 16)) & (versions.length() - 1);
+    }
+
+    @Override
+    public void trophiesChanged(String guildId, int trophyId) {
+        bump("trophy:" + guildId + ":" + trophyId);
+        bump("trophies:" + guildId);
+    }
+
+    @Override
+    public void awardsChanged(String guildId, int trophyId, Collection<String> userIds) {
+        bump("winners:" + guildId + ":" + trophyId);
+        bump("leaderboard:" + guildId);
+        for (String userId : userIds) {
+            bump("user:" + guildId + ":" + userId);
+        }
+    }
+
+    // Ansichten mit Mitgliedernamen neu rendern, wenn sich ein angezeigter Name geändert hat
+    public void membersChanged(String guildId) {
+        bump("names:" + guildId);
+    }
+
+    @Override
+    public void guildReloaded(String guildId) {
+        bump("guild:" + guildId);
+    }
+
+    @Override
+    public void dataReloaded() {
+        epoch.incrementAndGet();
+        invalidateAll();
+    }
+
+    public void invalidateAll() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("size=%d/%d, hits=%d, misses=%d, evictions=%d",
+            size(), maxEntries, hits.get(), misses.get(), evictions.get());
+    }
+
+    private static final class Key {
+        private final View view;
+        private final String guildId;
+        private final String entityId;
+        private final String variant;
+        private final long version;
+
+        private Key(View view, String guildId, String entityId, String variant, long version) {
+            this.view = view;
+            this.guildId = guildId;
+            this.entityId = entityId;
+            this.variant = variant;
+            this.version = version;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key other = (Key) o;
+            return version == other.version
+                && view == other.view
+                && Objects.equals(guildId, other.guildId)
+                && Objects.equals(entityId, other.entityId)
+                && Objects.equals(variant, other.variant);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(view, guildId, entityId, variant, version);
+        }
+    }
+}
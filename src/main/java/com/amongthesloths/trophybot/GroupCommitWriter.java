@@ -0,0 +1,295 @@
+package com.amongthesloths.trophybot;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Write-behind queue in front of the writer connection. Callers enqueue small write operations, a single writer thread
+ * drains the queue and applies up to {@code maxBatchSize} of them in one transaction, so a burst of awards costs one
+ * commit (and one fsync) instead of one per award. Each operation runs inside its own savepoint, a failing operation
+ * only rolls back itself. Futures complete after the commit, so an acknowledged write is durable.
+ * When the queue is full, callers wait up to the configured timeout and then get an SQLException.
+ */
+public class GroupCommitWriter implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(GroupCommitWriter.class);
+    private static final Metrics.Histogram BATCH_SIZE = Metrics.histogram(
+        "trophybot_db_group_commit_size", "Write operations applied per group commit",
+        new double[]{1, 2, 4, 8, 16, 32, 64, 128, 256, 512, 1024});
+    private static final Metrics.Histogram COMMIT_DURATION = Metrics.histogram(
+        "trophybot_db_group_commit_duration_seconds", "Duration of a group commit including all its operations");
+    private static final Metrics.Counter REJECTED = Metrics.counter(
+        "trophybot_db_write_queue_rejected_total", "Write operations rejected because the write queue stayed full");
+
+    public static final int DEFAULT_QUEUE_CAPACITY = 1024;
+    public static final int DEFAULT_MAX_BATCH_SIZE = 256;
+    public static final long DEFAULT_MAX_DELAY_MILLIS = 5;
+    // Obergrenze für execute(), damit ein hängender Writer keinen Worker-Thread für immer blockiert
+    private static final long COMMIT_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(30);
+
+    private final ConnectionPool pool;
+    private final BlockingQueue<PendingWrite<?>> queue;
+    private volatile int maxBatchSize;
+    private volatile long maxDelayNanos;
+    private final long offerTimeoutMillis;
+    private final Thread thread;
+    private volatile boolean closed;
+
+    private final AtomicLong commits = new AtomicLong();
+    private final AtomicLong operations = new AtomicLong();
+
+    @FunctionalInterface
+    public interface Operation<T> {
+        T apply(Connection connection) throws SQLException;
+    }
+
+    public GroupCommitWriter(ConnectionPool pool, int queueCapacity, int maxBatchSize, long maxDelayMillis,
+                             long offerTimeoutMillis) {
+        this.pool = pool;
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, maxDelayMillis));
+        this.offerTimeoutMillis = offerTimeoutMillis;
+        this.thread = new Thread(this::run, "trophybot-db-writer");
+        thread.setDaemon(true);
+        thread.start();
+        logger.info("Group commit writer started with queue capacity {}, batches of up to {} operations and {} ms delay",
+            queueCapacity, this.maxBatchSize, maxDelayMillis);
+    }
+
+    /**
+     * Enqueues the operation. The future completes with its result once the batch containing it has been committed.
+     *
+     * @throws SQLException if the queue stays full for the offer timeout or the writer is closed
+     */
+    public <T> CompletableFuture<T> submit(Operation<T> operation) throws SQLException {
+        if (closed) {
+            throw new SQLException("Write queue is closed");
+        }
+        PendingWrite<T> write = new PendingWrite<>(operation);
+        try {
+            if (!queue.offer(write, offerTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                REJECTED.inc();
+                throw new SQLException("Write queue is full (" + queue.size() + " pending operations)");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for the write queue", e);
+        }
+        // close() kann zwischen der Prüfung oben und dem Einreihen gelaufen sein; wer die Operation aus der Queue
+        // holt, schließt ihr Future ab, liegt sie noch dort, wird sie hier abgelehnt
+        if (closed && queue.remove(write)) {
+            throw new SQLException("Write queue is closed");
+        }
+        return write.future;
+    }
+
+    /**
+     * Submits the operation and waits until it has been committed.
+     *
+     * @throws SQLException also if the commit does not finish within 30 seconds; the operation may still be
+     *                      committed afterwards
+     */
+    public <T> T execute(Operation<T> operation) throws SQLException {
+        return execute(operation, result -> { });
+    }
+
+    /**
+     * Like {@link #execute(Operation)}, but runs {@code afterCommit} with the result as soon as the operation is
+     * committed, even if the caller has stopped waiting by then. In-memory state that mirrors the write belongs here,
+     * otherwise a commit that lands after the timeout is missing from it.
+     */
+    public <T> T execute(Operation<T> operation, Consumer<? super T> afterCommit) throws SQLException {
+        CompletableFuture<T> future = submit(operation).thenApply(result -> {
+            try {
+                afterCommit.accept(result);
+            } catch (RuntimeException e) {
+                // Die Änderung ist committet, der Aufrufer soll sie nicht als fehlgeschlagen sehen
+                logger.error("After-commit step failed", e);
+            }
+            return result;
+        });
+        try {
+            return future.get(COMMIT_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for the group commit", e);
+        } catch (TimeoutException e) {
+            throw new SQLException("Group commit did not finish within " + COMMIT_TIMEOUT_MILLIS + " ms ("
+                + queue.size() + " pending operations)", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException) {
+                throw (SQLException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new SQLException(cause);
+        }
+    }
+
+    private void run() {
+        List<PendingWrite<?>> batch = new ArrayList<>();
+        while (!closed || !queue.isEmpty()) {
+            PendingWrite<?> first;
+            try {
+                first = queue.poll(100, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                // Nur close() unterbricht, die Schleife leert danach die Queue
+                closed = true;
+                continue;
+            }
+            if (first == null) {
+                continue;
+            }
+            batch.add(first);
+            try {
+                collect(batch);
+            } catch (InterruptedException e) {
+                // Die bereits entnommenen Operationen trotzdem committen, sonst bleiben ihre Futures offen
+                closed = true;
+            }
+            commit(batch);
+            batch.clear();
+        }
+    }
+
+    // Kurz auf weitere Schreibvorgänge warten, damit sie im selben Commit landen
+    private void collect(List<PendingWrite<?>> batch) throws InterruptedException {
+        int limit = maxBatchSize;
+        long deadline = System.nanoTime() + maxDelayNanos;
+        while (batch.size() < limit) {
+            queue.drainTo(batch, limit - batch.size());
+            long remaining = deadline - System.nanoTime();
+            if (batch.size() >= limit || remaining <= 0) {
+                break;
+            }
+            PendingWrite<?> next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                break;
+            }
+            batch.add(next);
+        }
+    }
+
+    private void commit(List<PendingWrite<?>> batch) {
+        long start = System.nanoTime();
+        try (ConnectionPool.Lease lease = pool.acquireWriter()) {
+            Connection connection = lease.getConnection();
+            connection.setAutoCommit(false);
+            try {
+                for (PendingWrite<?> write : batch) {
+                    write.apply(connection);
+                }
+                connection.commit();
+            } catch (SQLException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        } catch (SQLException | RuntimeException e) {
+            logger.error("Group commit of {} operations failed", batch.size(), e);
+            for (PendingWrite<?> write : batch) {
+                write.future.completeExceptionally(e);
+            }
+            return;
+        } finally {
+            COMMIT_DURATION.observeSince(start);
+        }
+
+        BATCH_SIZE.observe(batch.size());
+        commits.incrementAndGet();
+        operations.addAndGet(batch.size());
+        for (PendingWrite<?> write : batch) {
+            write.complete();
+        }
+    }
+
+    /**
+     * Changes batch size and linger delay at runtime, starting with the next batch.
+     */
+    public void setBatching(int maxBatchSize, long maxDelayMillis) {
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, maxDelayMillis));
+    }
+
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    public long getCommitCount() {
+        return commits.get();
+    }
+
+    public long getOperationCount() {
+        return operations.get();
+    }
+
+    /**
+     * Stops accepting writes and waits until the already queued ones are committed.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (thread.isAlive()) {
+            logger.warn("Group commit writer did not finish within 10 seconds, {} operations pending", queue.size());
+            thread.interrupt();
+        }
+        PendingWrite<?> abandoned;
+        while ((abandoned = queue.poll()) != null) {
+            abandoned.future.completeExceptionally(new SQLException("Write queue is closed"));
+        }
+        logger.info("Group commit writer stopped after {} commits with {} operations", commits.get(), operations.get());
+    }
+
+    private static final class PendingWrite<T> {
+        private final Operation<T> operation;
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+        private T result;
+        private Exception failure;
+
+        private PendingWrite(Operation<T> operation) {
+            this.operation = operation;
+        }
+
+        private void apply(Connection connection) throws SQLException {
+            Savepoint savepoint = connection.setSavepoint();
+            try {
+                result = operation.apply(connection);
+                connection.releaseSavepoint(savepoint);
+            } catch (SQLException | RuntimeException e) {
+                // Nur diese Operation zurückrollen, der Rest des Batches wird trotzdem committet
+                connection.rollback(savepoint);
+                failure = e;
+            }
+        }
+
+        private void complete() {
+            if (failure != null) {
+                future.completeExceptionally(failure);
+            } else {
+                future.complete(result);
+            }
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.amongthesloths.trophybot;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Remembers the results of recent writes by a caller-supplied key, e.g. the Discord interaction id, so a retried
+ * interaction gets the original answer instead of running the write again.
+ */
+public class IdempotencyCache<V> {
+    private final LinkedHashMap<String, V> results;
+
+    public IdempotencyCache(int maxEntries) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("maxEntries must be positive");
+        }
+        this.results = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, V> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * @return the result stored for the key, or null if the key is unknown or null
+     */
+    public synchronized V get(String key) {
+        return key != null ? results.get(key) : null;
+    }
+
+    public synchronized void put(String key, V result) {
+        if (key != null) {
+            results.put(key, result);
+        }
+    }
+}
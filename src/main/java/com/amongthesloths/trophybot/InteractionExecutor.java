@@ -0,0 +1,239 @@
+package com.amongthesloths.trophybot;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded worker pool that runs interaction work off the JDA event thread.
+ * Each guild may only occupy a limited number of workers at once, further tasks of that guild wait in a per-guild lane.
+ */
+public class InteractionExecutor {
+    private static final Logger logger = LoggerFactory.getLogger(InteractionExecutor.class);
+
+    private final ThreadPoolExecutor workers;
+    private volatile int perGuildLimit;
+    private final int laneCapacity;
+    private final Map<String, GuildLane> lanes = new ConcurrentHashMap<>();
+
+    private final AtomicInteger parked = new AtomicInteger();
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong totalQueueWaitNanos = new AtomicLong();
+    private final AtomicLong maxQueueWaitNanos = new AtomicLong();
+
+    public InteractionExecutor(int workerCount, int queueCapacity, int perGuildLimit) {
+        this.perGuildLimit = Math.max(1, perGuildLimit);
+        this.laneCapacity = Math.max(1, queueCapacity);
+        AtomicInteger threadId = new AtomicInteger();
+        this.workers = new ThreadPoolExecutor(
+            workerCount,
+            workerCount,
+            60, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(Math.max(1, queueCapacity)),
+            runnable -> {
+                Thread thread = new Thread(runnable, "interaction-worker-" + threadId.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        );
+        logger.info("Interaction executor started with {} workers, queue capacity {} and per-guild limit {}",
+            workerCount, queueCapacity, this.perGuildLimit);
+    }
+
+    /**
+     * Schedules the task for the given guild. If the bot is saturated the task is dropped and {@code onRejected} runs
+     * instead, either right away or later, if the task was waiting in its guild's lane when it had to be dropped.
+     */
+    public void submit(String guildId, Runnable task, Runnable onRejected) {
+        GuildLane lane = lanes.computeIfAbsent(guildId, id -> new GuildLane());
+        TimedTask timedTask = new TimedTask(lane, task, onRejected);
+
+        boolean laneFull = false;
+        synchronized (lane) {
+            if (lane.running >= perGuildLimit) {
+                if (lane.waiting.size() < laneCapacity) {
+                    lane.waiting.add(timedTask);
+                    parked.incrementAndGet();
+                    submitted.incrementAndGet();
+                    return;
+                }
+                laneFull = true;
+            } else {
+                lane.running++;
+            }
+        }
+        if (laneFull) {
+            rejected.incrementAndGet();
+            logger.warn("Rejected interaction for guild {}: lane is full", guildId);
+            onRejected.run();
+            return;
+        }
+
+        if (!dispatch(timedTask)) {
+            synchronized (lane) {
+                lane.running--;
+            }
+            onRejected.run();
+            // Während dieser Task den Platz hielt, können weitere geparkt worden sein; ohne laufenden Task holt sie
+            // sonst niemand mehr aus der Lane
+            drain(lane);
+            return;
+        }
+        submitted.incrementAndGet();
+    }
+
+    private boolean dispatch(TimedTask task) {
+        try {
+            workers.execute(task);
+            return true;
+        } catch (RejectedExecutionException e) {
+            rejected.incrementAndGet();
+            logger.warn("Rejected interaction: worker queue is full");
+            return false;
+        }
+    }
+
+    private void onFinished(GuildLane lane) {
+        completed.incrementAndGet();
+        TimedTask next;
+        synchronized (lane) {
+            next = lane.waiting.poll();
+            if (next == null) {
+                lane.running--;
+                return;
+            }
+        }
+        parked.decrementAndGet();
+        try {
+            workers.execute(next);
+        } catch (RejectedExecutionException e) {
+            // Worker-Queue voll: der Task wurde schon angenommen, also direkt auf diesem Worker ausführen
+            next.run();
+        }
+    }
+
+    // Startet wartende Tasks, solange die Lane freie Plätze hat; was der Pool nicht annimmt, wird abgelehnt
+    private void drain(GuildLane lane) {
+        while (true) {
+            TimedTask next;
+            synchronized (lane) {
+                if (lane.running >= perGuildLimit || (next = lane.waiting.poll()) == null) {
+                    return;
+                }
+                lane.running++;
+            }
+            parked.decrementAndGet();
+            if (!dispatch(next)) {
+                synchronized (lane) {
+                    lane.running--;
+                }
+                next.onRejected.run();
+            }
+        }
+    }
+
+    /**
+     * Resizes the worker pool and the per-guild limit at runtime. If the limit grows, tasks already waiting in a lane
+     * start right away.
+     */
+    public void resize(int workerCount, int perGuildLimit) {
+        int count = Math.max(1, workerCount);
+        // Beim Vergrößern zuerst das Maximum anheben, beim Verkleinern zuerst die Kerngröße senken
+        if (count > workers.getMaximumPoolSize()) {
+            workers.setMaximumPoolSize(count);
+            workers.setCorePoolSize(count);
+        } else {
+            workers.setCorePoolSize(count);
+            workers.setMaximumPoolSize(count);
+        }
+        this.perGuildLimit = Math.max(1, perGuildLimit);
+        lanes.values().forEach(this::drain);
+        logger.info("Interaction executor resized to {} workers and per-guild limit {}", count, this.perGuildLimit);
+    }
+
+    public int getQueueDepth() {
+        return workers.getQueue().size() + parked.get();
+    }
+
+    public int getActiveWorkers() {
+        return workers.getActiveCount();
+    }
+
+    public long getSubmittedCount() {
+        return submitted.get();
+    }
+
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    public long getCompletedCount() {
+        return completed.get();
+    }
+
+    public long getTotalQueueWaitNanos() {
+        return totalQueueWaitNanos.get();
+    }
+
+    public long getMaxQueueWaitNanos() {
+        return maxQueueWaitNanos.get();
+    }
+
+    public void shutdown() {
+        logger.info("Shutting down interaction executor (submitted={}, completed={}, rejected={}, maxQueueWait={}ms)",
+            submitted.get(), completed.get(), rejected.get(), TimeUnit.NANOSECONDS.toMillis(maxQueueWaitNanos.get()));
+        workers.shutdown();
+        try {
+            if (!workers.awaitTermination(10, TimeUnit.SECONDS)) {
+                workers.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            workers.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static class GuildLane {
+        private final Queue<TimedTask> waiting = new ArrayDeque<>();
+        private int running;
+    }
+
+    private class TimedTask implements Runnable {
+        private final GuildLane lane;
+        private final Runnable task;
+        private final Runnable onRejected;
+        private final long enqueuedAt = System.nanoTime();
+
+        private TimedTask(GuildLane lane, Runnable task, Runnable onRejected) {
+            this.lane = lane;
+            this.task = task;
+            this.onRejected = onRejected;
+        }
+
+        @Override
+        public void run() {
+            long waited = System.nanoTime() - enqueuedAt;
+            totalQueueWaitNanos.addAndGet(waited);
+            maxQueueWaitNanos.accumulateAndGet(waited, Math::max);
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                logger.error("Unhandled exception in interaction task", e);
+            } finally {
+                onFinished(lane);
+            }
+        }
+    }
+}
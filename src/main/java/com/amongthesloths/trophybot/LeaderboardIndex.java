@@ -0,0 +1,126 @@
+package com.amongthesloths.trophybot;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * In-memory leaderboard built from the user_trophy_counts table.
+ * The sorted set answers top-N queries, the Fenwick tree over trophy counts answers rank queries in O(log n).
+ */
+public class LeaderboardIndex {
+    private static final Comparator<TrophyStore.UserTrophyCount> ORDER = Comparator
+        .comparingInt(TrophyStore.UserTrophyCount::getCount).reversed()
+        .thenComparingLong(TrophyStore.UserTrophyCount::getUserId);
+
+    private final Map<Long, TrophyStore.UserTrophyCount> entries = new HashMap<>();
+    private final TreeSet<TrophyStore.UserTrophyCount> ranking = new TreeSet<>(ORDER);
+    // usersPerCount[c] als Fenwick-Baum, Index 0 bleibt ungenutzt
+    private int[] usersPerCount = new int[64];
+
+    public synchronized void load(Map<Long, Integer> counts) {
+        entries.clear();
+        ranking.clear();
+        usersPerCount = new int[64];
+        for (Map.Entry<Long, Integer> entry : counts.entrySet()) {
+            if (entry.getValue() > 0) {
+                insert(new TrophyStore.UserTrophyCount(entry.getKey(), entry.getValue()));
+            }
+        }
+    }
+
+    public synchronized void adjust(long userId, int delta) {
+        if (delta == 0) {
+            return;
+        }
+        TrophyStore.UserTrophyCount previous = entries.remove(userId);
+        int newCount = delta;
+        if (previous != null) {
+            ranking.remove(previous);
+            fenwickAdd(previous.getCount(), -1);
+            newCount += previous.getCount();
+        }
+        if (newCount > 0) {
+            insert(new TrophyStore.UserTrophyCount(userId, newCount));
+        }
+    }
+
+    private void insert(TrophyStore.UserTrophyCount entry) {
+        entries.put(entry.getUserId(), entry);
+        ranking.add(entry);
+        fenwickAdd(entry.getCount(), 1);
+    }
+
+    public synchronized List<TrophyStore.UserTrophyCount> top(int limit) {
+        List<TrophyStore.UserTrophyCount> result = new ArrayList<>(Math.min(limit, ranking.size()));
+        Iterator<TrophyStore.UserTrophyCount> iterator = ranking.iterator();
+        while (iterator.hasNext() && result.size() < limit) {
+            result.add(iterator.next());
+        }
+        return result;
+    }
+
+    /**
+     * Returns the 1-based rank of the user, users with the same count share a rank. Returns 0 if the user has no trophies.
+     */
+    public synchronized int rank(long userId) {
+        TrophyStore.UserTrophyCount entry = entries.get(userId);
+        if (entry == null) {
+            return 0;
+        }
+        return entries.size() - fenwickSum(entry.getCount()) + 1;
+    }
+
+    public synchronized int count(long userId) {
+        TrophyStore.UserTrophyCount entry = entries.get(userId);
+        return entry != null ? entry.getCount() : 0;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized Map<Long, Integer> counts() {
+        Map<Long, Integer> counts = new HashMap<>(entries.size() * 4 / 3 + 1);
+        for (TrophyStore.UserTrophyCount entry : entries.values()) {
+            counts.put(entry.getUserId(), entry.getCount());
+        }
+        return counts;
+    }
+
+    private void fenwickAdd(int count, int delta) {
+        if (count >= usersPerCount.length) {
+            usersPerCount = grow(usersPerCount, Integer.highestOneBit(count) << 1);
+        }
+        for (int i = count; i < usersPerCount.length; i += i & -i) {
+            usersPerCount[i] += delta;
+        }
+    }
+
+    private int fenwickSum(int count) {
+        int sum = 0;
+        for (int i = Math.min(count, usersPerCount.length - 1); i > 0; i -= i & -i) {
+            sum += usersPerCount[i];
+        }
+        return sum;
+    }
+
+    private static int[] grow(int[] tree, int newLength) {
+        // Fenwick-Knoten oberhalb der alten Länge aus den Präfixsummen neu berechnen
+        int[] grown = Arrays.copyOf(tree, newLength);
+        for (int i = tree.length; i < newLength; i++) {
+            int lowest = i & -i;
+            int sum = 0;
+            for (int j = i - 1; j > i - lowest; j -= j & -j) {
+                sum += grown[j];
+            }
+            grown[i] = sum;
+        }
+        return grown;
+    }
+}
@@ -0,0 +1,335 @@
+package com.amongthesloths.trophybot;
+
+import net.dv8tion.jda.api.entities.Guild;
+import net.dv8tion.jda.api.entities.Member;
+import net.dv8tion.jda.api.events.guild.member.GuildMemberJoinEvent;
+import net.dv8tion.jda.api.events.guild.member.GuildMemberRemoveEvent;
+import net.dv8tion.jda.api.events.guild.member.update.GuildMemberUpdateAvatarEvent;
+import net.dv8tion.jda.api.events.guild.member.update.GuildMemberUpdateNicknameEvent;
+import net.dv8tion.jda.api.events.interaction.GenericInteractionCreateEvent;
+import net.dv8tion.jda.api.events.user.update.UserUpdateAvatarEvent;
+import net.dv8tion.jda.api.events.user.update.UserUpdateGlobalNameEvent;
+import net.dv8tion.jda.api.events.user.update.UserUpdateNameEvent;
+import net.dv8tion.jda.api.hooks.ListenerAdapter;
+import net.dv8tion.jda.api.sharding.ShardManager;
+import net.dv8tion.jda.api.utils.concurrent.Task;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Size-bounded cache of display names and avatars per guild member, so views can show names instead of mentions.
+ * Entries are kept current from gateway member events and interactions and expire after a TTL. Misses of one render
+ * are loaded together through gateway member chunk requests (100 ids each), never through per-user REST calls.
+ * Users that are no longer members are cached as well, so they are not requested again until the entry expires.
+ */
+public class MemberNameCache extends ListenerAdapter {
+    private static final Logger logger = LoggerFactory.getLogger(MemberNameCache.class);
+    private static final int CHUNK_SIZE = 100;
+    private static final Duration CHUNK_TIMEOUT = Duration.ofSeconds(3);
+
+    private volatile int maxEntries;
+    private volatile long ttlNanos;
+    private final LinkedHashMap<Key, MemberInfo> entries;
+    private volatile ShardManager shardManager;
+    private volatile Consumer<String> onNamesChanged = guildId -> { };
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong chunkRequests = new AtomicLong();
+
+    public MemberNameCache(int maxEntries, long ttlMinutes) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("maxEntries must be positive");
+        }
+        this.maxEntries = maxEntries;
+        this.ttlNanos = TimeUnit.MINUTES.toNanos(ttlMinutes);
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, MemberInfo> eldest) {
+                return size() > MemberNameCache.this.maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Changes size limit and TTL at runtime. Surplus entries are evicted, least recently used first.
+     */
+    public void setLimits(int maxEntries, long ttlMinutes) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("maxEntries must be positive");
+        }
+        this.maxEntries = maxEntries;
+        this.ttlNanos = TimeUnit.MINUTES.toNanos(ttlMinutes);
+        synchronized (entries) {
+            Iterator<Key> eldest = entries.keySet().iterator();
+            while (entries.size() > maxEntries && eldest.hasNext()) {
+                eldest.next();
+                eldest.remove();
+            }
+        }
+    }
+
+    /**
+     * Connects the cache to the running shards, needed to load missing members.
+     */
+    public void attach(ShardManager shardManager) {
+        this.shardManager = shardManager;
+    }
+
+    /**
+     * Called with the guild id when a name shown in rendered views has changed, e.g. to invalidate them.
+     */
+    public void setOnNamesChanged(Consumer<String> onNamesChanged) {
+        this.onNamesChanged = onNamesChanged;
+    }
+
+    /**
+     * Returns the members for the given users, loading all misses with as few chunk requests as possible. Users that
+     * could not be resolved (left the guild, guild not on this process, timeout) are missing from the result.
+     */
+    public Map<Long, MemberInfo> resolve(String guildId, Collection<Long> userIds) {
+        Map<Long, MemberInfo> result = new HashMap<>();
+        Set<Long> missing = new HashSet<>();
+        long now = System.nanoTime();
+        synchronized (entries) {
+            for (long userId : userIds) {
+                MemberInfo info = entries.get(new Key(guildId, userId));
+                if (info != null && now - info.loadedAt < ttlNanos) {
+                    hits.incrementAndGet();
+                    if (info.isMember()) {
+                        result.put(userId, info);
+                    }
+                } else {
+                    missing.add(userId);
+                }
+            }
+        }
+        if (missing.isEmpty()) {
+            return result;
+        }
+        misses.addAndGet(missing.size());
+
+        ShardManager shards = shardManager;
+        Guild guild = shards != null ? shards.getGuildById(guildId) : null;
+        if (guild == null) {
+            return result;
+        }
+        Set<Long> answered = new HashSet<>();
+        for (Member member : load(guild, missing, answered)) {
+            MemberInfo info = remember(member);
+            result.put(member.getIdLong(), info);
+            missing.remove(member.getIdLong());
+        }
+        // Nur Benutzer, nach denen Discord tatsächlich gefragt wurde, gelten als ausgetreten; Chunks mit Fehler oder
+        // Timeout werden beim nächsten Rendern erneut angefragt
+        missing.retainAll(answered);
+        synchronized (entries) {
+            for (long userId : missing) {
+                entries.put(new Key(guildId, userId), new MemberInfo(null, null, System.nanoTime()));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Loads the members, adding every id whose lookup completed (found or not) to {@code answered}.
+     */
+    private List<Member> load(Guild guild, Set<Long> userIds, Set<Long> answered) {
+        List<Member> members = new ArrayList<>(userIds.size());
+        List<Long> pending = new ArrayList<>();
+        // Mitglieder aus dem JDA-Cache brauchen keine Anfrage
+        for (long userId : userIds) {
+            Member cached = guild.getMemberById(userId);
+            if (cached != null) {
+                members.add(cached);
+                answered.add(userId);
+            } else {
+                pending.add(userId);
+            }
+        }
+
+        List<Task<List<Member>>> tasks = new ArrayList<>();
+        List<List<Long>> chunks = new ArrayList<>();
+        for (int from = 0; from < pending.size(); from += CHUNK_SIZE) {
+            List<Long> chunk = pending.subList(from, Math.min(from + CHUNK_SIZE, pending.size()));
+            chunkRequests.incrementAndGet();
+            chunks.add(chunk);
+            tasks.add(guild.retrieveMembersByIds(chunk.stream().mapToLong(Long::longValue).toArray())
+                .setTimeout(CHUNK_TIMEOUT));
+        }
+        for (int i = 0; i < tasks.size(); i++) {
+            try {
+                members.addAll(tasks.get(i).get());
+                answered.addAll(chunks.get(i));
+            } catch (RuntimeException e) {
+                logger.warn("Failed to load members of guild {}, showing mentions instead", guild.getId(), e);
+            }
+        }
+        return members;
+    }
+
+    private MemberInfo remember(Member member) {
+        MemberInfo info = new MemberInfo(member.getEffectiveName(), member.getEffectiveAvatarUrl(), System.nanoTime());
+        MemberInfo previous;
+        synchronized (entries) {
+            previous = entries.put(new Key(member.getGuild().getId(), member.getIdLong()), info);
+        }
+        if (previous != null && previous.isMember() && !Objects.equals(previous.displayName, info.displayName)) {
+            onNamesChanged.accept(member.getGuild().getId());
+        }
+        return info;
+    }
+
+    private void forget(String guildId, long userId) {
+        MemberInfo previous;
+        synchronized (entries) {
+            previous = entries.remove(new Key(guildId, userId));
+        }
+        if (previous != null && previous.isMember()) {
+            onNamesChanged.accept(guildId);
+        }
+    }
+
+    // Globale Namensänderungen betreffen jeden Server, auf dem der Benutzer zwischengespeichert ist
+    private void forgetUser(long userId) {
+        List<String> guilds = new ArrayList<>();
+        synchronized (entries) {
+            entries.entrySet().removeIf(entry -> {
+                if (entry.getKey().userId == userId) {
+                    guilds.add(entry.getKey().guildId);
+                    return true;
+                }
+                return false;
+            });
+        }
+        guilds.forEach(onNamesChanged);
+    }
+
+    @Override
+    public void onGenericInteractionCreate(GenericInteractionCreateEvent event) {
+        if (event.getMember() != null) {
+            remember(event.getMember());
+        }
+    }
+
+    @Override
+    public void onGuildMemberJoin(GuildMemberJoinEvent event) {
+        remember(event.getMember());
+    }
+
+    @Override
+    public void onGuildMemberRemove(GuildMemberRemoveEvent event) {
+        forget(event.getGuild().getId(), event.getUser().getIdLong());
+    }
+
+    @Override
+    public void onGuildMemberUpdateNickname(GuildMemberUpdateNicknameEvent event) {
+        remember(event.getMember());
+    }
+
+    @Override
+    public void onGuildMemberUpdateAvatar(GuildMemberUpdateAvatarEvent event) {
+        remember(event.getMember());
+    }
+
+    @Override
+    public void onUserUpdateName(UserUpdateNameEvent event) {
+        forgetUser(event.getUser().getIdLong());
+    }
+
+    @Override
+    public void onUserUpdateGlobalName(UserUpdateGlobalNameEvent event) {
+        forgetUser(event.getUser().getIdLong());
+    }
+
+    @Override
+    public void onUserUpdateAvatar(UserUpdateAvatarEvent event) {
+        forgetUser(event.getUser().getIdLong());
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    public long getChunkRequestCount() {
+        return chunkRequests.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("entries=%d, hits=%d, misses=%d, chunkRequests=%d",
+            size(), hits.get(), misses.get(), chunkRequests.get());
+    }
+
+    public static final class MemberInfo {
+        private final String displayName;
+        private final String avatarUrl;
+        private final long loadedAt;
+
+        private MemberInfo(String displayName, String avatarUrl, long loadedAt) {
+            this.displayName = displayName;
+            this.avatarUrl = avatarUrl;
+            this.loadedAt = loadedAt;
+        }
+
+        public String getDisplayName() {
+            return displayName;
+        }
+
+        public String getAvatarUrl() {
+            return avatarUrl;
+        }
+
+        private boolean isMember() {
+            return displayName != null;
+        }
+    }
+
+    private static final class Key {
+        private final String guildId;
+        private final long userId;
+
+        private Key(String guildId, long userId) {
+            this.guildId = guildId;
+            this.userId = userId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key key = (Key) o;
+            return userId == key.userId && guildId.equals(key.guildId);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * guildId.hashCode() + Long.hashCode(userId);
+        }
+    }
+}
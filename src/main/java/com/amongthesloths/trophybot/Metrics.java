@@ -0,0 +1,266 @@
+package com.amongthesloths.trophybot;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Process-wide metric registry rendered in the Prometheus text exposition format.
+ * Metrics are registered once as static fields, like loggers, and updated lock-free from any thread.
+ */
+public final class Metrics {
+    private static final double[] LATENCY_BUCKETS = {
+        0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10
+    };
+
+    private static final Map<String, Collector> collectors = new ConcurrentSkipListMap<>();
+
+    private Metrics() {
+    }
+
+    public static Counter counter(String name, String help, String... labelNames) {
+        return register(new Counter(name, help, labelNames));
+    }
+
+    /**
+     * Latency histogram in seconds with buckets from 1 ms to 10 s.
+     */
+    public static Histogram histogram(String name, String help, String... labelNames) {
+        return register(new Histogram(name, help, labelNames, LATENCY_BUCKETS));
+    }
+
+    /**
+     * Histogram with custom bucket bounds, e.g. for sizes instead of durations. Bounds must be sorted ascending.
+     */
+    public static Histogram histogram(String name, String help, double[] buckets, String... labelNames) {
+        return register(new Histogram(name, help, labelNames, buckets.clone()));
+    }
+
+    public static void gauge(String name, String help, DoubleSupplier value) {
+        register(new FunctionCollector(name, help, "gauge", value));
+    }
+
+    /**
+     * Gauge with one label whose values are read on every scrape, e.g. one series per shard.
+     */
+    public static void gauge(String name, String help, String labelName, Supplier<Map<String, ? extends Number>> values) {
+        register(new LabeledFunctionCollector(name, help, labelName, values));
+    }
+
+    /**
+     * Exposes a monotonically increasing value that is already counted elsewhere, e.g. in {@link ConnectionPool}.
+     */
+    public static void functionCounter(String name, String help, DoubleSupplier value) {
+        register(new FunctionCollector(name, help, "counter", value));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T extends Collector> T register(T collector) {
+        if (collector instanceof FunctionCollector || collector instanceof LabeledFunctionCollector) {
+            // Funktionswerte dürfen ersetzt werden, z.B. wenn eine Komponente neu erstellt wird
+            collectors.put(collector.name, collector);
+            return collector;
+        }
+        Collector existing = collectors.putIfAbsent(collector.name, collector);
+        if (existing == null) {
+            return collector;
+        }
+        if (existing.getClass() != collector.getClass()) {
+            throw new IllegalArgumentException("Metric " + collector.name + " is already registered with another type");
+        }
+        return (T) existing;
+    }
+
+    public static String scrape() {
+        StringBuilder out = new StringBuilder(4096);
+        for (Collector collector : collectors.values()) {
+            out.append("# HELP ").append(collector.name).append(' ').append(collector.help).append('\n');
+            out.append("# TYPE ").append(collector.name).append(' ').append(collector.type).append('\n');
+            collector.write(out);
+        }
+        return out.toString();
+    }
+
+    private abstract static class Collector {
+        final String name;
+        final String help;
+        final String type;
+        final String[] labelNames;
+
+        Collector(String name, String help, String type, String[] labelNames) {
+            this.name = name;
+            this.help = help;
+            this.type = type;
+            this.labelNames = labelNames;
+        }
+
+        abstract void write(StringBuilder out);
+
+        List<String> key(String[] labelValues) {
+            if (labelValues.length != labelNames.length) {
+                throw new IllegalArgumentException(name + " expects labels " + Arrays.toString(labelNames));
+            }
+            String[] values = labelValues.clone();
+            for (int i = 0; i < values.length; i++) {
+                if (values[i] == null) {
+                    values[i] = "";
+                }
+            }
+            return List.of(values);
+        }
+
+        void appendLabels(StringBuilder out, List<String> labelValues, String extraName, String extraValue) {
+            if (labelValues.isEmpty() && extraName == null) {
+                return;
+            }
+            out.append('{');
+            for (int i = 0; i < labelValues.size(); i++) {
+                if (i > 0) {
+                    out.append(',');
+                }
+                appendLabel(out, labelNames[i], labelValues.get(i));
+            }
+            if (extraName != null) {
+                if (!labelValues.isEmpty()) {
+                    out.append(',');
+                }
+                appendLabel(out, extraName, extraValue);
+            }
+            out.append('}');
+        }
+
+        private static void appendLabel(StringBuilder out, String name, String value) {
+            out.append(name).append("=\"");
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c == '\\' || c == '"') {
+                    out.append('\\').append(c);
+                } else if (c == '\n') {
+                    out.append("\\n");
+                } else {
+                    out.append(c);
+                }
+            }
+            out.append('"');
+        }
+    }
+
+    public static final class Counter extends Collector {
+        private final Map<List<String>, LongAdder> children = new ConcurrentHashMap<>();
+
+        private Counter(String name, String help, String[] labelNames) {
+            super(name, help, "counter", labelNames);
+        }
+
+        public void inc(String... labelValues) {
+            children.computeIfAbsent(key(labelValues), k -> new LongAdder()).increment();
+        }
+
+        public long get(String... labelValues) {
+            LongAdder child = children.get(key(labelValues));
+            return child != null ? child.sum() : 0;
+        }
+
+        @Override
+        void write(StringBuilder out) {
+            for (Map.Entry<List<String>, LongAdder> entry : children.entrySet()) {
+                out.append(name);
+                appendLabels(out, entry.getKey(), null, null);
+                out.append(' ').append(entry.getValue().sum()).append('\n');
+            }
+        }
+    }
+
+    public static final class Histogram extends Collector {
+        private final double[] bounds;
+        private final Map<List<String>, Child> children = new ConcurrentHashMap<>();
+
+        private Histogram(String name, String help, String[] labelNames, double[] bounds) {
+            super(name, help, "histogram", labelNames);
+            this.bounds = bounds;
+        }
+
+        public void observeSince(long startNanos, String... labelValues) {
+            observe((System.nanoTime() - startNanos) / 1_000_000_000.0, labelValues);
+        }
+
+        public void observe(double seconds, String... labelValues) {
+            Child child = children.computeIfAbsent(key(labelValues), k -> new Child(bounds.length));
+            int bucket = Arrays.binarySearch(bounds, seconds);
+            child.buckets[bucket >= 0 ? bucket : -bucket - 1].increment();
+            child.sum.add(seconds);
+        }
+
+        @Override
+        void write(StringBuilder out) {
+            for (Map.Entry<List<String>, Child> entry : children.entrySet()) {
+                Child child = entry.getValue();
+                long cumulative = 0;
+                for (int i = 0; i <= bounds.length; i++) {
+                    cumulative += child.buckets[i].sum();
+                    out.append(name).append("_bucket");
+                    appendLabels(out, entry.getKey(), "le", i < bounds.length ? Double.toString(bounds[i]) : "+Inf");
+                    out.append(' ').append(cumulative).append('\n');
+                }
+                out.append(name).append("_sum");
+                appendLabels(out, entry.getKey(), null, null);
+                out.append(' ').append(child.sum.sum()).append('\n');
+                out.append(name).append("_count");
+                appendLabels(out, entry.getKey(), null, null);
+                out.append(' ').append(cumulative).append('\n');
+            }
+        }
+
+        private static final class Child {
+            // Letzter Eintrag ist der +Inf-Bucket
+            private final LongAdder[] buckets;
+            private final DoubleAdder sum = new DoubleAdder();
+
+            private Child(int bounds) {
+                buckets = new LongAdder[bounds + 1];
+                for (int i = 0; i < buckets.length; i++) {
+                    buckets[i] = new LongAdder();
+                }
+            }
+        }
+    }
+
+    private static final class FunctionCollector extends Collector {
+        private final DoubleSupplier value;
+
+        private FunctionCollector(String name, String help, String type, DoubleSupplier value) {
+            super(name, help, type, new String[0]);
+            this.value = value;
+        }
+
+        @Override
+        void write(StringBuilder out) {
+            out.append(name).append(' ').append(value.getAsDouble()).append('\n');
+        }
+    }
+
+    private static final class LabeledFunctionCollector extends Collector {
+        private final Supplier<Map<String, ? extends Number>> values;
+
+        private LabeledFunctionCollector(String name, String help, String labelName,
+                                         Supplier<Map<String, ? extends Number>> values) {
+            super(name, help, "gauge", new String[]{labelName});
+            this.values = values;
+        }
+
+        @Override
+        void write(StringBuilder out) {
+            for (Map.Entry<String, ? extends Number> entry : values.get().entrySet()) {
+                out.append(name);
+                appendLabels(out, List.of(entry.getKey()), null, null);
+                out.append(' ').append(entry.getValue().doubleValue()).append('\n');
+            }
+        }
+    }
+}
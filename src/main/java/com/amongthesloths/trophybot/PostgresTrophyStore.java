@@ -0,0 +1,845 @@
+package com.amongthesloths.trophybot;
+
+import com.amongthesloths.trophybot.models.Page;
+import com.amongthesloths.trophybot.models.Trophy;
+import com.amongthesloths.trophybot.models.UserTrophy;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.*;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * PostgreSQL implementation of {@link TrophyStore} for deployments where several bot instances share one database.
+ * Leaderboard, rank and counts are computed by the server instead of being kept in memory. Only the trophy catalog is
+ * cached; instances tell each other about writes via LISTEN/NOTIFY so catalogs and rendered views stay current.
+ */
+public class PostgresTrophyStore implements TrophyStore {
+    private static final Logger logger = LoggerFactory.getLogger(PostgresTrophyStore.class);
+    private static final Metrics.Histogram QUERY_DURATION = Metrics.histogram(
+        "trophybot_db_query_duration_seconds", "Duration of DatabaseManager calls that hit the database", "method");
+    private static final Metrics.Counter QUERY_ERRORS = Metrics.counter(
+        "trophybot_db_errors_total", "DatabaseManager calls that failed with an SQLException", "method");
+
+    private static final String CHANNEL = "trophybot_changes";
+    // NOTIFY-Payloads sind auf knapp 8000 Bytes begrenzt, größere Änderungen werden als Reload gemeldet
+    private static final int MAX_PAYLOAD_BYTES = 7900;
+    private static final long LISTEN_RETRY_MILLIS = 5000;
+    private static final int IDEMPOTENCY_ENTRIES = 1024;
+
+    private static final String INCREMENT_COUNT_SQL =
+        "INSERT INTO user_trophy_counts (guild_id, user_id, trophy_count) VALUES (?, ?, ?) " +
+        "ON CONFLICT (guild_id, user_id) DO UPDATE SET trophy_count = user_trophy_counts.trophy_count + excluded.trophy_count";
+    private static final String INSERT_AWARD_SQL =
+        "INSERT INTO trophy_awards (guild_id, user_id, trophy_id, awarded_by, awarded_at) VALUES (?, ?, ?, ?, ?) " +
+        "ON CONFLICT (guild_id, user_id, trophy_id) DO NOTHING";
+    private static final String AWARD_COLUMNS = "ta.id, ta.user_id, ta.trophy_id, ta.awarded_at, ta.awarded_by";
+    // Gleiche Reihenfolge wie LeaderboardIndex: Anzahl absteigend, dann numerische Benutzer-ID
+    private static final String LEADERBOARD_ORDER = "trophy_count DESC, LENGTH(user_id), user_id";
+
+    private final HikariDataSource dataSource;
+    private final String url;
+    private final String user;
+    private final String password;
+    private final String instanceId = UUID.randomUUID().toString();
+    private final TrophyCatalog catalog = new TrophyCatalog();
+    private final List<ChangeListener> listeners = new CopyOnWriteArrayList<>();
+    private final IdempotencyCache<Boolean> recentAwards = new IdempotencyCache<>(IDEMPOTENCY_ENTRIES);
+    private final IdempotencyCache<BatchAwardResult> recentBulkAwards = new IdempotencyCache<>(IDEMPOTENCY_ENTRIES);
+    private final Thread notificationThread;
+    private volatile boolean closed;
+
+    public PostgresTrophyStore(String url, String user, String password, int maxPoolSize, long acquireTimeoutMillis) throws SQLException {
+        this.url = url;
+        this.user = user;
+        this.password = password;
+
+        HikariConfig config = new HikariConfig();
+        config.setJdbcUrl(url);
+        config.setUsername(user);
+        config.setPassword(password);
+        config.setMaximumPoolSize(maxPoolSize);
+        config.setConnectionTimeout(acquireTimeoutMillis);
+        config.setPoolName("trophybot");
+        // Der Treiber cached Prepared Statements serverseitig pro Verbindung
+        config.addDataSourceProperty("prepareThreshold", "1");
+        this.dataSource = new HikariDataSource(config);
+
+        try (Connection connection = dataSource.getConnection()) {
+            SchemaMigrator.postgres().migrate(connection);
+        } catch (SQLException | RuntimeException e) {
+            dataSource.close();
+            throw e;
+        }
+        catalog.load(loadAllTrophies());
+        logger.info("Loaded {} trophies into the catalog", catalog.size());
+
+        this.notificationThread = new Thread(this::listenForChanges, "trophybot-pg-listener");
+        notificationThread.setDaemon(true);
+        notificationThread.start();
+    }
+
+    @Override
+    public Trophy createTrophy(String guildId, String name, String description, String emoji, String createdBy) throws SQLException {
+        logger.info("Creating new trophy in guild {}: {}", guildId, name);
+        String sql = "INSERT INTO trophies (guild_id, name, description, emoji, created_at, created_by) VALUES (?, ?, ?, ?, ?, ?)";
+        long start = System.nanoTime();
+        try {
+            Trophy trophy = inTransaction(connection -> {
+                try (PreparedStatement statement = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+                    statement.setString(1, guildId);
+                    statement.setString(2, name);
+                    statement.setString(3, description);
+                    statement.setString(4, emoji);
+                    Timestamp createdAt = Timestamp.valueOf(LocalDateTime.now());
+                    statement.setTimestamp(5, createdAt);
+                    statement.setString(6, createdBy);
+                    statement.executeUpdate();
+
+                    try (ResultSet generatedKeys = statement.getGeneratedKeys()) {
+                        if (!generatedKeys.next()) {
+                            throw new SQLException("Creating trophy failed, no ID obtained.");
+                        }
+                        int id = generatedKeys.getInt(1);
+                        notify(connection, "t", guildId, String.valueOf(id));
+                        return new Trophy(id, guildId, name, description, emoji, createdAt.toLocalDateTime(), createdBy);
+                    }
+                }
+            });
+            catalog.put(trophy);
+            fireTrophiesChanged(guildId, trophy.getId());
+            logger.info("Trophy created successfully: {}", trophy);
+            return trophy;
+        } catch (SQLException e) {
+            QUERY_ERRORS.inc("createTrophy");
+            logger.error("Failed to create trophy: {}", name, e);
+            throw e;
+        } finally {
+            QUERY_DURATION.observeSince(start, "createTrophy");
+        }
+    }
+
+    @Override
+    public boolean awardTrophy(String guildId, String userId, int trophyId, String awardedBy, String idempotencyKey) throws SQLException {
+        Boolean previous = recentAwards.get(idempotencyKey);
+        if (previous != null) {
+            logger.info("Ignoring repeated award request {}", idempotencyKey);
+            return previous;
+        }
+
+        logger.info("Awarding trophy {} to user {} by {} in guild {}", trophyId, userId, awardedBy, guildId);
+        long start = System.nanoTime();
+        try {
+            boolean inserted = inTransaction(connection -> {
+                try (PreparedStatement statement = connection.prepareStatement(INSERT_AWARD_SQL)) {
+                    statement.setString(1, guildId);
+                    statement.setString(2, userId);
+                    statement.setInt(3, trophyId);
+                    statement.setString(4, awardedBy);
+                    statement.setTimestamp(5, Timestamp.valueOf(LocalDateTime.now()));
+                    if (statement.executeUpdate() == 0) {
+                        return false;
+                    }
+                }
+                incrementCounts(connection, guildId, List.of(userId));
+                notifyAwards(connection, guildId, trophyId, List.of(userId));
+                return true;
+            });
+            recentAwards.put(idempotencyKey, inserted);
+            if (inserted) {
+                fireAwardsChanged(guildId, trophyId, List.of(userId));
+                logger.info("Trophy awarded successfully");
+            } else {
+                logger.info("User {} already has trophy {}", userId, trophyId);
+            }
+            return inserted;
+        } catch (SQLException e) {
+            QUERY_ERRORS.inc("awardTrophy");
+            logger.error("Failed to award trophy {} to user {}", trophyId, userId, e);
+            throw e;
+        } finally {
+            QUERY_DURATION.observeSince(start, "awardTrophy");
+        }
+    }
+
+    @Override
+    public BatchAwardResult awardTrophies(String guildId, Collection<String> userIds, int trophyId, String awardedBy,
+                                          String idempotencyKey) throws SQLException {
+        BatchAwardResult previous = recentBulkAwards.get(idempotencyKey);
+        if (previous != null) {
+            logger.info("Ignoring repeated bulk award request {}", idempotencyKey);
+            return previous;
+        }
+
+        logger.info("Awarding trophy {} to {} users by {} in guild {}", trophyId, userIds.size(), awardedBy, guildId);
+        List<String> candidates = new ArrayList<>(new LinkedHashSet<>(userIds));
+        long start = System.nanoTime();
+        try {
+            List<String> awarded = inTransaction(connection -> {
+                if (candidates.isEmpty()) {
+                    return List.of();
+                }
+
+                // Ein Statement für alle Benutzer, RETURNING liefert nur die wirklich neuen Vergaben
+                List<String> inserted = new ArrayList<>();
+                try (PreparedStatement statement = connection.prepareStatement(
+                        "INSERT INTO trophy_awards (guild_id, user_id, trophy_id, awarded_by, awarded_at) " +
+                        "SELECT ?, u, ?, ?, ? FROM unnest(?::text[]) AS u " +
+                        "ON CONFLICT (guild_id, user_id, trophy_id) DO NOTHING RETURNING user_id")) {
+                    statement.setString(1, guildId);
+                    statement.setInt(2, trophyId);
+                    statement.setString(3, awardedBy);
+                    statement.setTimestamp(4, Timestamp.valueOf(LocalDateTime.now()));
+                    statement.setArray(5, connection.createArrayOf("text", candidates.toArray()));
+                    try (ResultSet resultSet = statement.executeQuery()) {
+                        while (resultSet.next()) {
+                            inserted.add(resultSet.getString(1));
+                        }
+                    }
+                }
+                if (!inserted.isEmpty()) {
+                    incrementCounts(connection, guildId, inserted);
+                    notifyAwards(connection, guildId, trophyId, inserted);
+                }
+                return inserted;
+            });
+
+            if (!awarded.isEmpty()) {
+                fireAwardsChanged(guildId, trophyId, awarded);
+            }
+            BatchAwardResult result = new BatchAwardResult(awarded.size(), candidates.size() - awarded.size());
+            recentBulkAwards.put(idempotencyKey, result);
+            logger.info("Bulk award of trophy {} finished: {}", trophyId, result);
+            return result;
+        } catch (SQLException e) {
+            QUERY_ERRORS.inc("awardTrophies");
+            logger.error("Failed to bulk award trophy {} to {} users", trophyId, userIds.size(), e);
+            throw e;
+        } finally {
+            QUERY_DURATION.observeSince(start, "awardTrophies");
+        }
+    }
+
+    private static void incrementCounts(Connection connection, String guildId, List<String> userIds) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(INCREMENT_COUNT_SQL)) {
+            for (String userId : userIds) {
+                statement.setString(1, guildId);
+                statement.setString(2, userId);
+                statement.setInt(3, 1);
+                statement.addBatch();
+            }
+            statement.executeBatch();
+        }
+    }
+
+    @Override
+    public void removeTrophy(String guildId, String userId, int trophyId) throws SQLException {
+        logger.info("Removing trophy {} from user {} in guild {}", trophyId, userId, guildId);
+        long start = System.nanoTime();
+        try {
+            int rowsAffected = inTransaction(connection -> {
+                int deleted;
+                try (PreparedStatement statement = connection.prepareStatement(
+                        "DELETE FROM trophy_awards WHERE guild_id = ? AND user_id = ? AND trophy_id = ?")) {
+                    statement.setString(1, guildId);
+                    statement.setString(2, userId);
+                    statement.setInt(3, trophyId);
+                    deleted = statement.executeUpdate();
+                }
+                if (deleted > 0) {
+                    try (PreparedStatement update = connection.prepareStatement(
+                             "UPDATE user_trophy_counts SET trophy_count = trophy_count - ? WHERE guild_id = ? AND user_id = ?");
+                         PreparedStatement cleanup = connection.prepareStatement(
+                             "DELETE FROM user_trophy_counts WHERE guild_id = ? AND user_id = ? AND trophy_count <= 0")) {
+                        update.setInt(1, deleted);
+                        update.setString(2, guildId);
+                        update.setString(3, userId);
+                        update.executeUpdate();
+                        cleanup.setString(1, guildId);
+                        cleanup.setString(2, userId);
+                        cleanup.executeUpdate();
+                    }
+                    notifyAwards(connection, guildId, trophyId, List.of(userId));
+                }
+                return deleted;
+            });
+            if (rowsAffected > 0) {
+                fireAwardsChanged(guildId, trophyId, List.of(userId));
+                logger.info("Trophy removed successfully");
+            } else {
+                logger.warn("No trophy found to remove for user {} and trophy {}", userId, trophyId);
+                throw new SQLException("Trophy not found for this user");
+            }
+        } catch (SQLException e) {
+            QUERY_ERRORS.inc("removeTrophy");
+            logger.error("Failed to remove trophy {} from user {}", trophyId, userId, e);
+            throw e;
+        } finally {
+            QUERY_DURATION.observeSince(start, "removeTrophy");
+        }
+    }
+
+    @Override
+    public Trophy getTrophyById(String guildId, int trophyId) throws SQLException {
+        Trophy cached = catalog.get(guildId, trophyId);
+        if (cached != null) {
+            return cached;
+        }
+
+        logger.debug("Fetching trophy with ID: {}", trophyId);
+        long start = System.nanoTime();
+        try (Connection connection = dataSource.getConnection()) {
+            Trophy trophy = loadTrophy(connection, guildId, trophyId);
+            if (trophy == null) {
+                logger.warn("No trophy found with ID: {}", trophyId);
+            }
+            return trophy;
+        } catch (SQLException e) {
+            QUERY_ERRORS.inc("getTrophyById");
+            logger.error("Failed to fetch trophy with ID: {}", trophyId, e);
+            throw e;
+        } finally {
+            QUERY_DURATION.observeSince(start, "getTrophyById");
+        }
+    }
+
+    @Override
+    public List<Trophy> getAllTrophies(String guildId) {
+        return catalog.getAll(guildId);
+    }
+
+    @Override
+    public List<Trophy> searchTrophies(String guildId, String query, int limit) {
+        return catalog.search(guildId, query, limit);
+    }
+
+    @Override
+    public Page<Trophy> getTrophyPage(String guildId, int cursor, boolean forward, int limit) {
+        return catalog.page(guildId, cursor, forward, limit);
+    }
+
+    @Override
+    public Page<UserTrophy> getTrophyWinnersPage(String guildId, int trophyId, long cursor, boolean forward, int limit) throws SQLException {
+        logger.debug("Fetching winners page of trophy {} (cursor={}, forward={})", trophyId, cursor, forward);
+        return queryAwardPage("getTrophyWinnersPage", guildId, "ta.trophy_id", trophyId, cursor, forward, limit);
+    }
+
+    @Override
+    public Page<UserTrophy> getUserTrophiesPage(String guildId, String userId, long cursor, boolean forward, int limit) throws SQLException {
+        logger.debug("Fetching trophy page of user {} (cursor={}, forward={})", userId, cursor, forward);
+        return queryAwardPage("getUserTrophiesPage", guildId, "ta.user_id", userId, cursor, forward, limit);
+    }
+
+    private Page<UserTrophy> queryAwardPage(String method, String guildId, String column, Object key, long cursor,
+                                            boolean forward, int limit) throws SQLException {
+        String sql = "SELECT " + AWARD_COLUMNS + " FROM trophy_awards ta " +
+                    "WHERE ta.guild_id = ? AND " + column + " = ?" +
+                    (forward ? " AND ta.id < ? ORDER BY ta.id DESC" : " AND ta.id > ? ORDER BY ta.id ASC") +
+                    " LIMIT ?";
+        List<UserTrophy> rows = new ArrayList<>(limit + 1);
+        long start = System.nanoTime();
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setString(1, guildId);
+            statement.setObject(2, key);
+            statement.setLong(3, forward && cursor == 0 ? Long.MAX_VALUE : cursor);
+            statement.setInt(4, limit + 1);
+            readAwards(connection, guildId, statement, (awardId, userId, trophy, awardedAt, awardedBy) ->
+                rows.add(new UserTrophy(awardId, userId, trophy, awardedAt, awardedBy)));
+        } catch (SQLException e) {
+            QUERY_ERRORS.inc(method);
+            logger.error("Failed to fetch award page ({} = {})", column, key, e);
+            throw e;
+        } finally {
+            QUERY_DURATION.observeSince(start, method);
+        }
+        if (!forward) {
+            Collections.reverse(rows);
+        }
+        return Page.fromSeek(rows, limit, forward, cursor > 0);
+    }
+
+    @Override
+    public List<UserTrophy> getUserTrophies(String guildId, String userId) throws SQLException {
+        List<UserTrophy> userTrophies = new ArrayList<>();
+        streamUserTrophies(guildId, userId, (awardId, user, trophy, awardedAt, awardedBy) ->
+            userTrophies.add(new UserTrophy(awardId, user, trophy, awardedAt, awardedBy)));
+        return userTrophies;
+    }
+
+    @Override
+    public List<UserTrophy> getUsersWithTrophy(String guildId, int trophyId) throws SQLException {
+        List<UserTrophy> userTrophies = new ArrayList<>();
+        streamTrophyWinners(guildId, trophyId, (awardId, userId, trophy, awardedAt, awardedBy) ->
+            userTrophies.add(new UserTrophy(awardId, userId, trophy, awardedAt, awardedBy)));
+        return userTrophies;
+    }
+
+    @Override
+    public int streamUserTrophies(String guildId, String userId, AwardRowConsumer consumer) throws SQLException {
+        logger.debug("Fetching trophies for user {} in guild {}", userId, guildId);
+        return streamAwards("getUserTrophies", guildId, "ta.user_id", userId, consumer);
+    }
+
+    @Override
+    public int streamTrophyWinners(String guildId, int trophyId, AwardRowConsumer consumer) throws SQLException {
+        logger.debug("Fetching users with trophy ID: {}", trophyId);
+        return streamAwards("getUsersWithTrophy", guildId, "ta.trophy_id", trophyId, consumer);
+    }
+
+    private int streamAwards(String method, String guildId, String column, Object key, AwardRowConsumer consumer) throws SQLException {
+        String sql = "SELECT " + AWARD_COLUMNS + " FROM trophy_awards ta " +
+                    "WHERE ta.guild_id = ? AND " + column + " = ? ORDER BY ta.awarded_at DESC";
+        long start = System.nanoTime();
+        try (Connection connection = dataSource.getConnection()) {
+            // Ohne Transaktion lädt der Treiber das ganze Ergebnis, mit Fetch-Size wird in Blöcken gelesen
+            connection.setAutoCommit(false);
+            try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                statement.setFetchSize(500);
+                statement.setString(1, guildId);
+                statement.setObject(2, key);
+                int rows = readAwards(connection, guildId, statement, consumer);
+                connection.commit();
+                return rows;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            QUERY_ERRORS.inc(method);
+            logger.error("Failed to fetch awards ({} = {})", column, key, e);
+            throw e;
+        } finally {
+            QUERY_DURATION.observeSince(start, method);
+        }
+    }
+
+    private int readAwards(Connection connection, String guildId, PreparedStatement statement,
+                           AwardRowConsumer consumer) throws SQLException {
+        int rows = 0;
+        Trophy trophy = null;
+        try (ResultSet resultSet = statement.executeQuery()) {
+            while (resultSet.next()) {
+                int trophyId = resultSet.getInt(3);
+                if (trophy == null || trophy.getId() != trophyId) {
+                    trophy = catalog.get(guildId, trophyId);
+                    if (trophy == null) {
+                        trophy = loadTrophy(connection, guildId, trophyId);
+                        if (trophy == null) {
+                            throw new SQLException("Award references unknown trophy " + trophyId);
+                        }
+                    }
+                }
+                Timestamp awardedAt = resultSet.getTimestamp(4);
+                consumer.accept(
+                    resultSet.getLong(1),
+                    Long.parseLong(resultSet.getString(2)),
+                    trophy,
+                    awardedAt != null ? awardedAt.getTime() : UserTrophy.UNKNOWN_DATE,
+                    Long.parseLong(resultSet.getString(5))
+                );
+                rows++;
+            }
+        }
+        return rows;
+    }
+
+    @Override
+    public List<UserTrophyCount> getLeaderboard(String guildId, int limit) throws SQLException {
+        logger.debug("Fetching leaderboard of guild {} with limit: {}", guildId, limit);
+        String sql = "SELECT user_id, trophy_count FROM user_trophy_counts WHERE guild_id = ? AND trophy_count > 0 " +
+                    "ORDER BY " + LEADERBOARD_ORDER + " LIMIT ?";
+        long start = System.nanoTime();
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setString(1, guildId);
+            statement.setInt(2, limit);
+            List<UserTrophyCount> leaderboard = new ArrayList<>(limit);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    leaderboard.add(new UserTrophyCount(Long.parseLong(resultSet.getString(1)), resultSet.getInt(2)));
+                }
+            }
+            return leaderboard;
+        } catch (SQLException e) {
+            QUERY_ERRORS.inc("getLeaderboard");
+            logger.error("Failed to fetch leaderboard of guild {}", guildId, e);
+            throw e;
+        } finally {
+            QUERY_DURATION.observeSince(start, "getLeaderboard");
+        }
+    }
+
+    @Override
+    public int getLeaderboardRank(String guildId, String userId) throws SQLException {
+        // Gleicher Rang bei gleicher Anzahl wie im LeaderboardIndex
+        String sql = "SELECT 1 + (SELECT COUNT(*) FROM user_trophy_counts o WHERE o.guild_id = c.guild_id " +
+                    "AND o.trophy_count > c.trophy_count) FROM user_trophy_counts c " +
+                    "WHERE c.guild_id = ? AND c.user_id = ? AND c.trophy_count > 0";
+        long start = System.nanoTime();
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setString(1, guildId);
+            statement.setString(2, userId);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                return resultSet.next() ? resultSet.getInt(1) : 0;
+            }
+        } catch (SQLException e) {
+            QUERY_ERRORS.inc("getLeaderboardRank");
+            logger.error("Failed to fetch rank of user {}", userId, e);
+            throw e;
+        } finally {
+            QUERY_DURATION.observeSince(start, "getLeaderboardRank");
+        }
+    }
+
+    @Override
+    public int getTrophyCount(String guildId, String userId) throws SQLException {
+        long start = System.nanoTime();
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(
+                 "SELECT trophy_count FROM user_trophy_counts WHERE guild_id = ? AND user_id = ?")) {
+            statement.setString(1, guildId);
+            statement.setString(2, userId);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                return resultSet.next() ? Math.max(resultSet.getInt(1), 0) : 0;
+            }
+        } catch (SQLException e) {
+            QUERY_ERRORS.inc("getTrophyCount");
+            logger.error("Failed to fetch trophy count of user {}", userId, e);
+            throw e;
+        } finally {
+            QUERY_DURATION.observeSince(start, "getTrophyCount");
+        }
+    }
+
+    @Override
+    public int rebuildLeaderboard() throws SQLException {
+        logger.info("Rebuilding leaderboard counts");
+        return rebuildCounts(null);
+    }
+
+    @Override
+    public int rebuildLeaderboard(String guildId) throws SQLException {
+        logger.info("Rebuilding leaderboard counts of guild {}", guildId);
+        return rebuildCounts(guildId);
+    }
+
+    private int rebuildCounts(String guildId) throws SQLException {
+        String filter = guildId != null ? " WHERE guild_id = ?" : "";
+        long start = System.nanoTime();
+        try {
+            int users = inTransaction(connection -> {
+                try (PreparedStatement delete = connection.prepareStatement("DELETE FROM user_trophy_counts" + filter);
+                     PreparedStatement insert = connection.prepareStatement(
+                         "INSERT INTO user_trophy_counts (guild_id, user_id, trophy_count) " +
+                         "SELECT guild_id, user_id, COUNT(*) FROM trophy_awards" + filter + " GROUP BY guild_id, user_id")) {
+                    if (guildId != null) {
+                        delete.setString(1, guildId);
+                        insert.setString(1, guildId);
+                    }
+                    delete.executeUpdate();
+                    int inserted = insert.executeUpdate();
+                    if (guildId != null) {
+                        notify(connection, "r", guildId);
+                    } else {
+                        notify(connection, "r");
+                    }
+                    return inserted;
+                }
+            });
+            if (guildId != null) {
+                fireGuildReloaded(guildId);
+            } else {
+                for (ChangeListener listener : listeners) {
+                    listener.dataReloaded();
+                }
+            }
+            logger.info("Leaderboard rebuilt with {} users", users);
+            return users;
+        } catch (SQLException e) {
+            QUERY_ERRORS.inc("rebuildLeaderboard");
+            logger.error("Failed to rebuild leaderboard", e);
+            throw e;
+        } finally {
+            QUERY_DURATION.observeSince(start, "rebuildLeaderboard");
+        }
+    }
+
+    @Override
+    public SeasonArchive startSeasonArchive(String guildId, String endedBy) throws SQLException {
+        logger.info("Starting season archive of guild {} by {}", guildId, endedBy);
+        return inTransaction(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "WITH season AS (INSERT INTO seasons (guild_id, ended_at, ended_by) VALUES (?, ?, ?) RETURNING id) " +
+                    "SELECT season.id, COALESCE(MAX(ta.id), 0), COUNT(ta.id) FROM season " +
+                    "LEFT JOIN trophy_awards ta ON ta.guild_id = ? GROUP BY season.id")) {
+                statement.setString(1, guildId);
+                statement.setTimestamp(2, Timestamp.valueOf(LocalDateTime.now()));
+                statement.setString(3, endedBy);
+                statement.setString(4, guildId);
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    if (!resultSet.next()) {
+                        throw new SQLException("Creating season failed, no ID obtained.");
+                    }
+                    return new SeasonArchive(resultSet.getLong(1), guildId, resultSet.getLong(2), resultSet.getLong(3));
+                }
+            }
+        });
+    }
+
+    @Override
+    public int archiveAwards(SeasonArchive season, int limit) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            // Verschieben und Löschen in einer Anweisung auf dem Server
+            return inTransaction(connection -> {
+                try (PreparedStatement statement = connection.prepareStatement(
+                        "WITH moved AS (DELETE FROM trophy_awards WHERE id IN (" +
+                        "SELECT id FROM trophy_awards WHERE guild_id = ? AND id <= ? ORDER BY id LIMIT ?) " +
+                        "RETURNING id, guild_id, trophy_id, user_id, awarded_by, awarded_at) " +
+                        "INSERT INTO trophy_awards_archive (season_id, award_id, guild_id, trophy_id, user_id, awarded_by, awarded_at) " +
+                        "SELECT ?, id, guild_id, trophy_id, user_id, awarded_by, awarded_at FROM moved")) {
+                    statement.setString(1, season.getGuildId());
+                    statement.setLong(2, season.getMaxAwardId());
+                    statement.setInt(3, limit);
+                    statement.setLong(4, season.getId());
+                    return statement.executeUpdate();
+                }
+            });
+        } catch (SQLException e) {
+            QUERY_ERRORS.inc("archiveAwards");
+            logger.error("Failed to archive awards of season {}", season.getId(), e);
+            throw e;
+        } finally {
+            QUERY_DURATION.observeSince(start, "archiveAwards");
+        }
+    }
+
+    @Override
+    public void addChangeListener(ChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    private void fireTrophiesChanged(String guildId, int trophyId) {
+        for (ChangeListener listener : listeners) {
+            listener.trophiesChanged(guildId, trophyId);
+        }
+    }
+
+    private void fireAwardsChanged(String guildId, int trophyId, Collection<String> userIds) {
+        for (ChangeListener listener : listeners) {
+            listener.awardsChanged(guildId, trophyId, userIds);
+        }
+    }
+
+    private void fireGuildReloaded(String guildId) {
+        for (ChangeListener listener : listeners) {
+            listener.guildReloaded(guildId);
+        }
+    }
+
+    private void notifyAwards(Connection connection, String guildId, int trophyId, List<String> userIds) throws SQLException {
+        notify(connection, "a", guildId, String.valueOf(trophyId), String.join(",", userIds));
+    }
+
+    /**
+     * Queues a change message for the other instances. It is sent with the surrounding transaction, so a rolled back
+     * write is never announced.
+     */
+    private void notify(Connection connection, String type, String... fields) throws SQLException {
+        StringBuilder payload = new StringBuilder(instanceId).append('|').append(type);
+        for (String field : fields) {
+            payload.append('|').append(field);
+        }
+        String message = payload.toString();
+        if (message.getBytes(StandardCharsets.UTF_8).length > MAX_PAYLOAD_BYTES) {
+            message = instanceId + "|r";
+        }
+        try (PreparedStatement statement = connection.prepareStatement("SELECT pg_notify(?, ?)")) {
+            statement.setString(1, CHANNEL);
+            statement.setString(2, message);
+            statement.execute();
+        }
+    }
+
+    private void listenForChanges() {
+        while (!closed) {
+            // Eigene Verbindung außerhalb des Pools, LISTEN gilt nur für die Sitzung
+            try (Connection connection = DriverManager.getConnection(url, user, password)) {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + CHANNEL);
+                }
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                logger.info("Listening for changes of other instances on {}", CHANNEL);
+                while (!closed) {
+                    PGNotification[] notifications = pgConnection.getNotifications(1000);
+                    if (notifications != null) {
+                        for (PGNotification notification : notifications) {
+                            try {
+                                handleNotification(connection, notification.getParameter());
+                            } catch (RuntimeException e) {
+                                // Unlesbare Nachricht oder fehlerhafter Listener: der Thread muss weiterlaufen,
+                                // und was die Nachricht geändert hätte, ist unbekannt
+                                logger.error("Failed to handle change notification '{}', reloading everything",
+                                    notification.getParameter(), e);
+                                reloadAll();
+                            }
+                        }
+                    }
+                }
+            } catch (SQLException e) {
+                if (closed) {
+                    return;
+                }
+                logger.warn("Change listener lost its connection, retrying in {} ms", LISTEN_RETRY_MILLIS, e);
+                // Verpasste Änderungen sind unbekannt, also alles verwerfen
+                reloadAll();
+                try {
+                    Thread.sleep(LISTEN_RETRY_MILLIS);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private void handleNotification(Connection connection, String payload) throws SQLException {
+        String[] fields = payload.split("\\|", -1);
+        if (fields.length < 2 || fields[0].equals(instanceId)) {
+            return;
+        }
+        logger.debug("Change from another instance: {}", payload);
+        switch (fields[1]) {
+            case "t": {
+                String guildId = fields[2];
+                int trophyId = Integer.parseInt(fields[3]);
+                loadTrophy(connection, guildId, trophyId);
+                fireTrophiesChanged(guildId, trophyId);
+                break;
+            }
+            case "a": {
+                List<String> userIds = fields[4].isEmpty() ? List.of() : Arrays.asList(fields[4].split(","));
+                fireAwardsChanged(fields[2], Integer.parseInt(fields[3]), userIds);
+                break;
+            }
+            case "r":
+                // Mit Server nur dessen Zählungen neu aufgebaut, der Katalog bleibt gültig
+                if (fields.length > 2) {
+                    fireGuildReloaded(fields[2]);
+                } else {
+                    reloadAll();
+                }
+                break;
+            default:
+                reloadAll();
+                break;
+        }
+    }
+
+    private void reloadAll() {
+        try {
+            catalog.load(loadAllTrophies());
+        } catch (SQLException e) {
+            logger.error("Failed to reload the trophy catalog", e);
+        }
+        for (ChangeListener listener : listeners) {
+            try {
+                listener.dataReloaded();
+            } catch (RuntimeException e) {
+                logger.error("Change listener {} failed to reload", listener.getClass().getSimpleName(), e);
+            }
+        }
+    }
+
+    private List<Trophy> loadAllTrophies() throws SQLException {
+        logger.debug("Fetching all trophies");
+        List<Trophy> trophies = new ArrayList<>();
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT * FROM trophies ORDER BY id")) {
+            while (resultSet.next()) {
+                trophies.add(readTrophy(resultSet));
+            }
+            return trophies;
+        } catch (SQLException e) {
+            logger.error("Failed to fetch trophies", e);
+            throw e;
+        }
+    }
+
+    private Trophy loadTrophy(Connection connection, String guildId, int trophyId) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement("SELECT * FROM trophies WHERE id = ? AND guild_id = ?")) {
+            statement.setInt(1, trophyId);
+            statement.setString(2, guildId);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                if (!resultSet.next()) {
+                    return null;
+                }
+                Trophy trophy = readTrophy(resultSet);
+                catalog.put(trophy);
+                return trophy;
+            }
+        }
+    }
+
+    private static Trophy readTrophy(ResultSet resultSet) throws SQLException {
+        return new Trophy(
+            resultSet.getInt("id"),
+            resultSet.getString("guild_id"),
+            resultSet.getString("name"),
+            resultSet.getString("description"),
+            resultSet.getString("emoji"),
+            resultSet.getTimestamp("created_at").toLocalDateTime(),
+            resultSet.getString("created_by")
+        );
+    }
+
+    private <T> T inTransaction(TransactionWork<T> work) throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+            try {
+                T result = work.run(connection);
+                connection.commit();
+                return result;
+            } catch (SQLException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface TransactionWork<T> {
+        T run(Connection connection) throws SQLException;
+    }
+
+    public HikariDataSource getDataSource() {
+        return dataSource;
+    }
+
+    @Override
+    public void close() {
+        logger.info("Closing database connection");
+        closed = true;
+        notificationThread.interrupt();
+        logger.info("Trophy catalog stats - {}", catalog);
+        dataSource.close();
+        logger.info("Database connection closed successfully");
+    }
+}
@@ -0,0 +1,283 @@
+package com.amongthesloths.trophybot;
+
+import net.dv8tion.jda.api.interactions.InteractionHook;
+import net.dv8tion.jda.api.requests.RestAction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Outbound queue in front of JDA's requester for interaction replies. Initial responses (reply, defer, autocomplete)
+ * go out immediately because Discord drops them after three seconds. Edits of the original response take precedence
+ * over follow-up messages, and each route only has a limited number of requests in flight, so a burst waits here,
+ * visible in the metrics, instead of inside JDA. A queued edit that is superseded by a newer edit of the same message
+ * is replaced in place; only the latest state is sent, so every edit must carry the complete message.
+ */
+public class ReplyScheduler {
+    private static final Logger logger = LoggerFactory.getLogger(ReplyScheduler.class);
+    private static final Metrics.Histogram REPLY_DURATION = Metrics.histogram(
+        "trophybot_reply_duration_seconds", "Time from scheduling a reply until Discord acknowledged it", "route");
+    private static final Metrics.Histogram QUEUE_WAIT = Metrics.histogram(
+        "trophybot_reply_queue_wait_seconds", "Time a reply waited in the scheduler before it was handed to JDA", "route");
+    private static final Metrics.Counter COALESCED = Metrics.counter(
+        "trophybot_reply_coalesced_total", "Queued edits replaced by a newer edit of the same message");
+    private static final Metrics.Counter FAILURES = Metrics.counter(
+        "trophybot_reply_failures_total", "Replies rejected by Discord", "route");
+
+    public static final int DEFAULT_MAX_IN_FLIGHT = 8;
+    public static final int DEFAULT_QUEUE_CAPACITY = 1000;
+
+    // In Prioritätsreihenfolge, Antworten auf Interaktionen werden nie zurückgehalten
+    public enum Route {
+        INTERACTION_RESPONSE("interaction_response"),
+        EDIT_ORIGINAL("edit_original"),
+        FOLLOWUP("followup");
+
+        private final String label;
+
+        Route(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    private static final Route[] QUEUED_ROUTES = {Route.EDIT_ORIGINAL, Route.FOLLOWUP};
+
+    private int maxInFlight;
+    private final int queueCapacity;
+    private final Object lock = new Object();
+    private final Map<Route, ArrayDeque<PendingReply>> queues = new HashMap<>();
+    private final Map<String, PendingReply> queuedEdits = new HashMap<>();
+    private final Set<String> editsInFlight = new HashSet<>();
+    private final Map<Route, Integer> inFlight = new HashMap<>();
+    private int queued;
+
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong overflowed = new AtomicLong();
+
+    public ReplyScheduler(int maxInFlight, int queueCapacity) {
+        this.maxInFlight = Math.max(1, maxInFlight);
+        this.queueCapacity = Math.max(1, queueCapacity);
+        for (Route route : Route.values()) {
+            queues.put(route, new ArrayDeque<>());
+            inFlight.put(route, 0);
+        }
+        Thread dispatcher = new Thread(this::run, "trophybot-reply-dispatcher");
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+        logger.info("Reply scheduler started with {} requests in flight per route and queue capacity {}",
+            this.maxInFlight, this.queueCapacity);
+    }
+
+    /**
+     * Changes the in-flight limit per route at runtime.
+     */
+    public void setMaxInFlight(int maxInFlight) {
+        synchronized (lock) {
+            this.maxInFlight = Math.max(1, maxInFlight);
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * Sends an initial interaction response right away.
+     */
+    public void respond(RestAction<?> response) {
+        synchronized (lock) {
+            inFlight.merge(Route.INTERACTION_RESPONSE, 1, Integer::sum);
+        }
+        send(new PendingReply(Route.INTERACTION_RESPONSE, null, response), System.nanoTime());
+    }
+
+    /**
+     * Schedules an edit of the hook's original response. Edits of the same interaction are coalesced.
+     */
+    public void edit(InteractionHook hook, Function<InteractionHook, RestAction<?>> edit) {
+        enqueue(Route.EDIT_ORIGINAL, "interaction:" + hook.getInteraction().getId(), edit.apply(hook));
+    }
+
+    /**
+     * Schedules an edit of a component message through a deferred edit. Edits of the same message are coalesced,
+     * even if they come from different button clicks, e.g. someone paging quickly through a list.
+     */
+    public void editMessage(InteractionHook hook, String messageId, Function<InteractionHook, RestAction<?>> edit) {
+        enqueue(Route.EDIT_ORIGINAL, "message:" + messageId, edit.apply(hook));
+    }
+
+    /**
+     * Schedules a follow-up message. When both routes have free slots, queued edits are dispatched first.
+     */
+    public void followUp(RestAction<?> message) {
+        enqueue(Route.FOLLOWUP, null, message);
+    }
+
+    private void enqueue(Route route, String key, RestAction<?> action) {
+        synchronized (lock) {
+            PendingReply pending = key != null ? queuedEdits.get(key) : null;
+            if (pending != null) {
+                // Die Position in der Queue bleibt erhalten, gesendet wird nur der neueste Stand
+                pending.action = action;
+                coalesced.incrementAndGet();
+                COALESCED.inc();
+                return;
+            }
+            if (queued < queueCapacity) {
+                PendingReply reply = new PendingReply(route, key, action);
+                queues.get(route).add(reply);
+                if (key != null) {
+                    queuedEdits.put(key, reply);
+                }
+                queued++;
+                lock.notifyAll();
+                return;
+            }
+        }
+        // Lieber am Scheduler vorbei senden als eine Antwort verlieren
+        overflowed.incrementAndGet();
+        logger.warn("Reply queue is full ({} replies), sending {} directly", queueCapacity, route.label);
+        synchronized (lock) {
+            inFlight.merge(route, 1, Integer::sum);
+        }
+        send(new PendingReply(route, null, action), System.nanoTime());
+    }
+
+    private void run() {
+        while (true) {
+            PendingReply next;
+            synchronized (lock) {
+                while ((next = nextReady()) == null) {
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+            }
+            send(next, System.nanoTime());
+        }
+    }
+
+    // Erste sendbare Antwort nach Priorität: Route hat freie Plätze und für dieselbe Nachricht läuft keine Bearbeitung
+    private PendingReply nextReady() {
+        for (Route route : QUEUED_ROUTES) {
+            if (inFlight.get(route) >= maxInFlight) {
+                continue;
+            }
+            Iterator<PendingReply> iterator = queues.get(route).iterator();
+            while (iterator.hasNext()) {
+                PendingReply reply = iterator.next();
+                if (reply.key != null && editsInFlight.contains(reply.key)) {
+                    continue;
+                }
+                iterator.remove();
+                queued--;
+                if (reply.key != null) {
+                    queuedEdits.remove(reply.key);
+                    editsInFlight.add(reply.key);
+                }
+                inFlight.merge(route, 1, Integer::sum);
+                return reply;
+            }
+        }
+        return null;
+    }
+
+    private void send(PendingReply reply, long dispatchedAt) {
+        QUEUE_WAIT.observe((dispatchedAt - reply.scheduledAt) / 1e9, reply.route.label);
+        reply.action.queue(
+            success -> finish(reply),
+            failure -> {
+                FAILURES.inc(reply.route.label);
+                logger.warn("Discord rejected {} reply: {}", reply.route.label, failure.getMessage());
+                finish(reply);
+            });
+    }
+
+    private void finish(PendingReply reply) {
+        REPLY_DURATION.observeSince(reply.scheduledAt, reply.route.label);
+        sent.incrementAndGet();
+        synchronized (lock) {
+            inFlight.merge(reply.route, -1, Integer::sum);
+            if (reply.key != null) {
+                editsInFlight.remove(reply.key);
+            }
+            lock.notifyAll();
+        }
+    }
+
+    public Map<String, Integer> getQueueDepths() {
+        Map<String, Integer> depths = new TreeMap<>();
+        synchronized (lock) {
+            for (Route route : QUEUED_ROUTES) {
+                depths.put(route.label, queues.get(route).size());
+            }
+        }
+        return depths;
+    }
+
+    public Map<String, Integer> getInFlight() {
+        Map<String, Integer> requests = new TreeMap<>();
+        synchronized (lock) {
+            for (Route route : Route.values()) {
+                requests.put(route.label, inFlight.get(route));
+            }
+        }
+        return requests;
+    }
+
+    // Auslastung der begrenzten Routen, 1.0 heißt: neue Antworten warten im Scheduler
+    public Map<String, Double> getUtilization() {
+        Map<String, Double> utilization = new TreeMap<>();
+        synchronized (lock) {
+            for (Route route : QUEUED_ROUTES) {
+                utilization.put(route.label, inFlight.get(route) / (double) maxInFlight);
+            }
+        }
+        return utilization;
+    }
+
+    public long getSentCount() {
+        return sent.get();
+    }
+
+    public long getCoalescedCount() {
+        return coalesced.get();
+    }
+
+    public long getOverflowCount() {
+        return overflowed.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("queued=%s, inFlight=%s, sent=%d, coalesced=%d, overflowed=%d",
+            getQueueDepths(), getInFlight(), sent.get(), coalesced.get(), overflowed.get());
+    }
+
+    private static final class PendingReply {
+        private final Route route;
+        private final String key;
+        private final long scheduledAt = System.nanoTime();
+        private RestAction<?> action;
+
+        private PendingReply(Route route, String key, RestAction<?> action) {
+            this.route = route;
+            this.key = key;
+            this.action = action;
+        }
+    }
+}
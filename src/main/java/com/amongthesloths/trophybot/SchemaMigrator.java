@@ -0,0 +1,252 @@
+package com.amongthesloths.trophybot;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Brings the database schema up to date. Applied versions are recorded in schema_version; on startup only pending
+ * migrations run, each in its own transaction, so a database that is already current costs a single query.
+ * SQLite databases created before versioning start at version 0 and run all migrations, which are written to be
+ * idempotent for that case. PostgreSQL has its own migration list under db/migration/postgresql.
+ */
+public class SchemaMigrator {
+    private static final Logger logger = LoggerFactory.getLogger(SchemaMigrator.class);
+    private static final String MIGRATION_PATH = "db/migration/";
+    private static final Pattern SNOWFLAKE = Pattern.compile("\\d{1,20}");
+
+    private final List<Migration> migrations = new ArrayList<>();
+    private final String lockSql;
+    private final String unlockSql;
+
+    @FunctionalInterface
+    interface Step {
+        void apply(Connection connection) throws SQLException;
+    }
+
+    private SchemaMigrator(String lockSql, String unlockSql) {
+        this.lockSql = lockSql;
+        this.unlockSql = unlockSql;
+    }
+
+    public static SchemaMigrator sqlite(String legacyGuildId) {
+        // Die SQLite-Datei hat nur einen Writer, eine Sperre über Prozesse hinweg ist nicht nötig
+        SchemaMigrator migrator = new SchemaMigrator(null, null);
+        // Neue Migrationen nur anhängen, angewendete Versionen nie ändern
+        migrator.migrations.add(new Migration(1, "guild_id for legacy databases", true,
+            connection -> addGuildColumns(connection, legacyGuildId)));
+        migrator.migrations.add(sql(2, "baseline schema", "V2__baseline.sql"));
+        migrator.migrations.add(sql(3, "unique awards per user and trophy", "V3__unique_awards.sql"));
+        migrator.migrations.add(sql(4, "award index per user for profile pages", "V4__award_user_index.sql"));
+        return migrator;
+    }
+
+    public static SchemaMigrator postgres() {
+        // Mehrere Bot-Instanzen können gleichzeitig starten, nur eine migriert
+        SchemaMigrator migrator = new SchemaMigrator(
+            "SELECT pg_advisory_lock(hashtext('trophybot_schema'))",
+            "SELECT pg_advisory_unlock(hashtext('trophybot_schema'))");
+        migrator.migrations.add(sql(1, "baseline schema", "postgresql/V1__baseline.sql"));
+        migrator.migrations.add(sql(2, "award indexes for profile and winners pages", "postgresql/V2__award_page_indexes.sql"));
+        return migrator;
+    }
+
+    public int getLatestVersion() {
+        return migrations.get(migrations.size() - 1).version;
+    }
+
+    /**
+     * Applies all pending migrations.
+     *
+     * @return number of migrations applied
+     */
+    public int migrate(Connection connection) throws SQLException {
+        if (lockSql != null) {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute(lockSql);
+            }
+        }
+        try {
+            int current = currentVersion(connection);
+            if (current >= getLatestVersion()) {
+                logger.info("Database schema is current (version {})", current);
+                return 0;
+            }
+
+            logger.info("Migrating database schema from version {} to {}", current, getLatestVersion());
+            int applied = 0;
+            for (Migration migration : migrations) {
+                if (migration.version > current) {
+                    apply(connection, migration);
+                    applied++;
+                }
+            }
+            return applied;
+        } finally {
+            if (unlockSql != null) {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute(unlockSql);
+                }
+            }
+        }
+    }
+
+    private int currentVersion(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE IF NOT EXISTS schema_version (" +
+                "version INTEGER PRIMARY KEY, " +
+                "description TEXT NOT NULL, " +
+                "applied_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP, " +
+                "duration_ms INTEGER)");
+            try (ResultSet resultSet = statement.executeQuery("SELECT COALESCE(MAX(version), 0) FROM schema_version")) {
+                return resultSet.next() ? resultSet.getInt(1) : 0;
+            }
+        }
+    }
+
+    private void apply(Connection connection, Migration migration) throws SQLException {
+        logger.info("Applying migration {}: {}", migration.version, migration.description);
+        long start = System.nanoTime();
+        if (!migration.transactional) {
+            // z.B. CREATE INDEX CONCURRENTLY, das nicht in einer Transaktion laufen darf
+            migration.step.apply(connection);
+            recordVersion(connection, migration, start);
+            return;
+        }
+
+        connection.setAutoCommit(false);
+        try {
+            migration.step.apply(connection);
+            recordVersion(connection, migration, start);
+            connection.commit();
+        } catch (SQLException | RuntimeException e) {
+            connection.rollback();
+            logger.error("Migration {} failed, schema stays at version {}", migration.version, migration.version - 1, e);
+            throw e;
+        } finally {
+            connection.setAutoCommit(true);
+        }
+    }
+
+    private static void recordVersion(Connection connection, Migration migration, long start) throws SQLException {
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        try (PreparedStatement statement = connection.prepareStatement(
+                "INSERT INTO schema_version (version, description, duration_ms) VALUES (?, ?, ?)")) {
+            statement.setInt(1, migration.version);
+            statement.setString(2, migration.description);
+            statement.setLong(3, millis);
+            statement.executeUpdate();
+        }
+        logger.info("Migration {} applied in {} ms", migration.version, millis);
+    }
+
+    private static Migration sql(int version, String description, String resource) {
+        return new Migration(version, description, true, connection -> executeScript(connection, resource));
+    }
+
+    private static void executeScript(Connection connection, String resource) throws SQLException {
+        String script;
+        try (InputStream is = SchemaMigrator.class.getClassLoader().getResourceAsStream(MIGRATION_PATH + resource)) {
+            if (is == null) {
+                throw new RuntimeException("Could not find " + MIGRATION_PATH + resource + " in resources");
+            }
+            script = new BufferedReader(new InputStreamReader(is, StandardCharsets.UTF_8))
+                .lines()
+                .collect(Collectors.joining("\n"));
+        } catch (IOException e) {
+            throw new SQLException("Failed to read migration " + resource, e);
+        }
+
+        try (Statement statement = connection.createStatement()) {
+            for (String sql : script.split(";")) {
+                if (!sql.trim().isEmpty()) {
+                    statement.execute(sql);
+                }
+            }
+        }
+    }
+
+    // Datenbanken von vor der Aufteilung nach Servern bekommen die guild_id-Spalten nachgerüstet
+    private static void addGuildColumns(Connection connection, String legacyGuildId) throws SQLException {
+        String guildId = legacyGuildId == null ? "" : legacyGuildId.trim();
+        // Wird in die DEFAULT-Klausel eingesetzt, deshalb nur reine Snowflake-IDs zulassen
+        if (!guildId.isEmpty() && !SNOWFLAKE.matcher(guildId).matches()) {
+            throw new SQLException("database.legacy_guild_id must be a numeric guild id, got '" + legacyGuildId + "'");
+        }
+        try (Statement statement = connection.createStatement()) {
+            for (String table : List.of("trophies", "trophy_awards")) {
+                if (tableExists(connection, table) && !columnExists(connection, table, "guild_id")) {
+                    if (guildId.isEmpty() && hasRows(connection, table)) {
+                        // Ohne Server wären die vorhandenen Daten in keinem Server sichtbar
+                        throw new SQLException("Table " + table + " has data from before guilds were introduced; " +
+                            "set database.legacy_guild_id to the id of the server it belongs to and restart");
+                    }
+                    logger.info("Adding guild_id to {} (legacy guild: '{}')", table, guildId);
+                    statement.execute("ALTER TABLE " + table + " ADD COLUMN guild_id TEXT NOT NULL DEFAULT '" + guildId + "'");
+                }
+            }
+            if (tableExists(connection, "user_trophy_counts") && !columnExists(connection, "user_trophy_counts", "guild_id")) {
+                // Abgeleitete Daten, werden nach dem Schema-Setup neu aufgebaut
+                logger.info("Dropping legacy user_trophy_counts table");
+                statement.execute("DROP TABLE user_trophy_counts");
+            }
+        }
+    }
+
+    private static boolean hasRows(Connection connection, String table) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT 1 FROM " + table + " LIMIT 1")) {
+            return resultSet.next();
+        }
+    }
+
+    private static boolean tableExists(Connection connection, String table) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(
+                "SELECT 1 FROM sqlite_master WHERE type = 'table' AND name = ?")) {
+            statement.setString(1, table);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                return resultSet.next();
+            }
+        }
+    }
+
+    private static boolean columnExists(Connection connection, String table, String column) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("PRAGMA table_info(" + table + ")")) {
+            while (resultSet.next()) {
+                if (column.equals(resultSet.getString("name"))) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    static final class Migration {
+        private final int version;
+        private final String description;
+        private final boolean transactional;
+        private final Step step;
+
+        Migration(int version, String description, boolean transactional, Step step) {
+            this.version = version;
+            this.description = description;
+            this.transactional = transactional;
+            this.step = step;
+        }
+    }
+}
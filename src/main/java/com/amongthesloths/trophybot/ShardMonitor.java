@@ -0,0 +1,84 @@
+package com.amongthesloths.trophybot;
+
+import net.dv8tion.jda.api.JDA;
+import net.dv8tion.jda.api.events.session.ReadyEvent;
+import net.dv8tion.jda.api.events.session.SessionDisconnectEvent;
+import net.dv8tion.jda.api.events.session.SessionRecreateEvent;
+import net.dv8tion.jda.api.events.session.SessionResumeEvent;
+import net.dv8tion.jda.api.hooks.ListenerAdapter;
+import net.dv8tion.jda.api.sharding.ShardManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Logs and exposes the state of every gateway shard. Runs the given callback once, when the first shard is ready,
+ * e.g. to register the global slash commands.
+ */
+public class ShardMonitor extends ListenerAdapter {
+    private static final Logger logger = LoggerFactory.getLogger(ShardMonitor.class);
+    private static final Metrics.Counter DISCONNECTS = Metrics.counter(
+        "trophybot_shard_disconnects_total", "Gateway disconnects per shard", "shard");
+
+    private final long startNanos = System.nanoTime();
+    private final Consumer<JDA> onFirstReady;
+    private final AtomicBoolean firstReady = new AtomicBoolean();
+
+    public ShardMonitor(Consumer<JDA> onFirstReady) {
+        this.onFirstReady = onFirstReady;
+    }
+
+    @Override
+    public void onReady(ReadyEvent event) {
+        JDA shard = event.getJDA();
+        logger.info("Shard {} ready with {} guilds after {} ms", shard.getShardInfo().getShardString(),
+            event.getGuildTotalCount(), (System.nanoTime() - startNanos) / 1_000_000);
+        if (firstReady.compareAndSet(false, true)) {
+            onFirstReady.accept(shard);
+        }
+    }
+
+    @Override
+    public void onSessionDisconnect(SessionDisconnectEvent event) {
+        String shard = String.valueOf(event.getJDA().getShardInfo().getShardId());
+        DISCONNECTS.inc(shard);
+        logger.warn("Shard {} disconnected (close code {})", shard,
+            event.getCloseCode() != null ? event.getCloseCode().getCode() : "none");
+    }
+
+    @Override
+    public void onSessionResume(SessionResumeEvent event) {
+        logger.info("Shard {} resumed its session", event.getJDA().getShardInfo().getShardId());
+    }
+
+    @Override
+    public void onSessionRecreate(SessionRecreateEvent event) {
+        logger.info("Shard {} reconnected with a new session", event.getJDA().getShardInfo().getShardId());
+    }
+
+    public static void registerMetrics(ShardManager shardManager) {
+        Metrics.gauge("trophybot_gateway_ping_milliseconds", "Average heartbeat round trip to the Discord gateway",
+            shardManager::getAverageGatewayPing);
+        Metrics.gauge("trophybot_shards_running", "Shards that are started, whatever their connection state",
+            shardManager::getShardsRunning);
+        Metrics.gauge("trophybot_shard_gateway_ping_milliseconds", "Heartbeat round trip per shard", "shard",
+            () -> perShard(shardManager, shard -> (double) shard.getGatewayPing()));
+        Metrics.gauge("trophybot_shard_connected", "1 if the shard is connected to the gateway, otherwise 0", "shard",
+            () -> perShard(shardManager, shard -> shard.getStatus() == JDA.Status.CONNECTED ? 1.0 : 0.0));
+        Metrics.gauge("trophybot_shard_guilds", "Guilds served by the shard", "shard",
+            () -> perShard(shardManager, shard -> (double) shard.getGuildCache().size()));
+    }
+
+    private static Map<String, Double> perShard(ShardManager shardManager, ToDoubleFunction<JDA> value) {
+        Map<String, Double> values = new TreeMap<>();
+        for (JDA shard : shardManager.getShardCache()) {
+            values.put(String.valueOf(shard.getShardInfo().getShardId()), value.applyAsDouble(shard));
+        }
+        return values;
+    }
+}
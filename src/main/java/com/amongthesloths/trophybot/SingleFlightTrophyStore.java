@@ -0,0 +1,299 @@
+package com.amongthesloths.trophybot;
+
+import com.amongthesloths.trophybot.models.Page;
+import com.amongthesloths.trophybot.models.Trophy;
+import com.amongthesloths.trophybot.models.UserTrophy;
+
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decorator that lets concurrent identical reads share one query. The first caller for a key runs the query, callers
+ * arriving while it is in flight wait for its result instead of querying again, e.g. when many users press the same
+ * winners button right after an announcement. Nothing is cached beyond the running query.
+ * Only reads that go to the database are shared: award pages and lists, and the leaderboard if the store computes it
+ * in the database. Catalog reads are served from memory by every store and are passed through.
+ * Every change reported for a guild starts a new generation of that guild, so a read that starts after a write never
+ * joins a query that started before it. Results are shared between the callers and must not be modified.
+ */
+public class SingleFlightTrophyStore implements TrophyStore, TrophyStore.ChangeListener {
+    private static final Metrics.Counter DEDUPLICATED = Metrics.counter(
+        "trophybot_db_reads_deduplicated_total", "Reads that joined an identical query already in flight", "method");
+
+    private final TrophyStore delegate;
+    private final boolean leaderboardInDatabase;
+    private final Map<Key, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+    // Eine Generation pro Server, dazu eine globale für das Neuladen aller Daten
+    private final Map<String, AtomicLong> generations = new ConcurrentHashMap<>();
+    private final AtomicLong epoch = new AtomicLong();
+
+    private final AtomicLong queries = new AtomicLong();
+    private final AtomicLong deduplicated = new AtomicLong();
+
+    @FunctionalInterface
+    private interface Query<T> {
+        T run() throws SQLException;
+    }
+
+    /**
+     * @param leaderboardInDatabase whether the delegate reads leaderboard, rank and count from the database (PostgreSQL)
+     *                              rather than from memory (SQLite)
+     */
+    public SingleFlightTrophyStore(TrophyStore delegate, boolean leaderboardInDatabase) {
+        this.delegate = delegate;
+        this.leaderboardInDatabase = leaderboardInDatabase;
+        delegate.addChangeListener(this);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T flight(String method, String guildId, Query<T> query, Object... args) throws SQLException {
+        Key key = new Key(method, generation(guildId), args);
+        CompletableFuture<Object> flight = new CompletableFuture<>();
+        CompletableFuture<Object> running = inFlight.putIfAbsent(key, flight);
+        if (running != null) {
+            deduplicated.incrementAndGet();
+            DEDUPLICATED.inc(method);
+            return (T) await(running);
+        }
+
+        queries.incrementAndGet();
+        try {
+            T result = query.run();
+            flight.complete(result);
+            return result;
+        } catch (SQLException | RuntimeException e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, flight);
+        }
+    }
+
+    private static Object await(CompletableFuture<Object> running) throws SQLException {
+        try {
+            return running.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a shared query", e);
+        } catch (ExecutionException e) {
+            // Neue Exception, damit der Stacktrace den wartenden Aufrufer zeigt
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException) {
+                SQLException failure = (SQLException) cause;
+                throw new SQLException(failure.getMessage(), failure.getSQLState(), failure.getErrorCode(), failure);
+            }
+            if (cause instanceof RuntimeException) {
+                throw new IllegalStateException(cause.getMessage(), cause);
+            }
+            throw new SQLException(cause);
+        }
+    }
+
+    // Die Generationen steigen nur, daher ändert sich auch ihre Summe bei jeder Änderung
+    private long generation(String guildId) {
+        AtomicLong guild = generations.get(guildId);
+        return epoch.get() + (guild != null ? guild.get() : 0);
+    }
+
+    // Der Katalog liegt bei jedem Backend im Speicher
+    @Override
+    public Trophy getTrophyById(String guildId, int trophyId) throws SQLException {
+        return delegate.getTrophyById(guildId, trophyId);
+    }
+
+    @Override
+    public List<Trophy> getAllTrophies(String guildId) throws SQLException {
+        return delegate.getAllTrophies(guildId);
+    }
+
+    @Override
+    public Page<Trophy> getTrophyPage(String guildId, int cursor, boolean forward, int limit) throws SQLException {
+        return delegate.getTrophyPage(guildId, cursor, forward, limit);
+    }
+
+    @Override
+    public Page<UserTrophy> getTrophyWinnersPage(String guildId, int trophyId, long cursor, boolean forward, int limit) throws SQLException {
+        return flight("getTrophyWinnersPage", guildId, () -> delegate.getTrophyWinnersPage(guildId, trophyId, cursor, forward, limit),
+            guildId, trophyId, cursor, forward, limit);
+    }
+
+    @Override
+    public Page<UserTrophy> getUserTrophiesPage(String guildId, String userId, long cursor, boolean forward, int limit) throws SQLException {
+        return flight("getUserTrophiesPage", guildId, () -> delegate.getUserTrophiesPage(guildId, userId, cursor, forward, limit),
+            guildId, userId, cursor, forward, limit);
+    }
+
+    @Override
+    public List<UserTrophy> getUserTrophies(String guildId, String userId) throws SQLException {
+        return flight("getUserTrophies", guildId, () -> delegate.getUserTrophies(guildId, userId), guildId, userId);
+    }
+
+    @Override
+    public List<UserTrophy> getUsersWithTrophy(String guildId, int trophyId) throws SQLException {
+        return flight("getUsersWithTrophy", guildId, () -> delegate.getUsersWithTrophy(guildId, trophyId), guildId, trophyId);
+    }
+
+    @Override
+    public List<UserTrophyCount> getLeaderboard(String guildId, int limit) throws SQLException {
+        if (!leaderboardInDatabase) {
+            return delegate.getLeaderboard(guildId, limit);
+        }
+        return flight("getLeaderboard", guildId, () -> delegate.getLeaderboard(guildId, limit), guildId, limit);
+    }
+
+    @Override
+    public int getLeaderboardRank(String guildId, String userId) throws SQLException {
+        if (!leaderboardInDatabase) {
+            return delegate.getLeaderboardRank(guildId, userId);
+        }
+        return flight("getLeaderboardRank", guildId, () -> delegate.getLeaderboardRank(guildId, userId), guildId, userId);
+    }
+
+    @Override
+    public int getTrophyCount(String guildId, String userId) throws SQLException {
+        if (!leaderboardInDatabase) {
+            return delegate.getTrophyCount(guildId, userId);
+        }
+        return flight("getTrophyCount", guildId, () -> delegate.getTrophyCount(guildId, userId), guildId, userId);
+    }
+
+    // Der Suchindex liegt im Speicher, Streams liefern an einen Consumer und lassen sich nicht teilen
+    @Override
+    public List<Trophy> searchTrophies(String guildId, String query, int limit) {
+        return delegate.searchTrophies(guildId, query, limit);
+    }
+
+    @Override
+    public int streamUserTrophies(String guildId, String userId, AwardRowConsumer consumer) throws SQLException {
+        return delegate.streamUserTrophies(guildId, userId, consumer);
+    }
+
+    @Override
+    public int streamTrophyWinners(String guildId, int trophyId, AwardRowConsumer consumer) throws SQLException {
+        return delegate.streamTrophyWinners(guildId, trophyId, consumer);
+    }
+
+    @Override
+    public Trophy createTrophy(String guildId, String name, String description, String emoji, String createdBy) throws SQLException {
+        return delegate.createTrophy(guildId, name, description, emoji, createdBy);
+    }
+
+    @Override
+    public boolean awardTrophy(String guildId, String userId, int trophyId, String awardedBy, String idempotencyKey) throws SQLException {
+        return delegate.awardTrophy(guildId, userId, trophyId, awardedBy, idempotencyKey);
+    }
+
+    @Override
+    public BatchAwardResult awardTrophies(String guildId, Collection<String> userIds, int trophyId, String awardedBy,
+                                          String idempotencyKey) throws SQLException {
+        return delegate.awardTrophies(guildId, userIds, trophyId, awardedBy, idempotencyKey);
+    }
+
+    @Override
+    public void removeTrophy(String guildId, String userId, int trophyId) throws SQLException {
+        delegate.removeTrophy(guildId, userId, trophyId);
+    }
+
+    @Override
+    public int rebuildLeaderboard() throws SQLException {
+        return delegate.rebuildLeaderboard();
+    }
+
+    @Override
+    public int rebuildLeaderboard(String guildId) throws SQLException {
+        return delegate.rebuildLeaderboard(guildId);
+    }
+
+    @Override
+    public SeasonArchive startSeasonArchive(String guildId, String endedBy) throws SQLException {
+        return delegate.startSeasonArchive(guildId, endedBy);
+    }
+
+    @Override
+    public int archiveAwards(SeasonArchive season, int limit) throws SQLException {
+        return delegate.archiveAwards(season, limit);
+    }
+
+    @Override
+    public void addChangeListener(ChangeListener listener) {
+        delegate.addChangeListener(listener);
+    }
+
+    @Override
+    public void trophiesChanged(String guildId, int trophyId) {
+        bump(guildId);
+    }
+
+    @Override
+    public void awardsChanged(String guildId, int trophyId, Collection<String> userIds) {
+        bump(guildId);
+    }
+
+    @Override
+    public void guildReloaded(String guildId) {
+        bump(guildId);
+    }
+
+    @Override
+    public void dataReloaded() {
+        epoch.incrementAndGet();
+    }
+
+    private void bump(String guildId) {
+        generations.computeIfAbsent(guildId, g -> new AtomicLong()).incrementAndGet();
+    }
+
+    public TrophyStore getDelegate() {
+        return delegate;
+    }
+
+    public long getQueryCount() {
+        return queries.get();
+    }
+
+    public long getDeduplicatedCount() {
+        return deduplicated.get();
+    }
+
+    @Override
+    public void close() {
+        delegate.close();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("queries=%d, deduplicated=%d, inFlight=%d", queries.get(), deduplicated.get(), inFlight.size());
+    }
+
+    private static final class Key {
+        private final String method;
+        private final long generation;
+        private final Object[] args;
+
+        private Key(String method, long generation, Object[] args) {
+            this.method = method;
+            this.generation = generation;
+            this.args = args;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key key = (Key) o;
+            return generation == key.generation && method.equals(key.method) && Arrays.equals(args, key.args);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * method.hashCode() + Long.hashCode(generation)) + Arrays.hashCode(args);
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.amongthesloths.trophybot;
+
+import net.dv8tion.jda.api.events.GenericEvent;
+import net.dv8tion.jda.api.events.interaction.command.CommandAutoCompleteInteractionEvent;
+import net.dv8tion.jda.api.hooks.EventListener;
+import net.dv8tion.jda.api.interactions.callbacks.IReplyCallback;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lets the gateway connect while the database is still loading. Until {@link #open} is called, interactions get a
+ * short notice instead of timing out; afterwards every event is passed on to the handlers.
+ */
+public class StartupGate implements EventListener {
+    private static final Logger logger = LoggerFactory.getLogger(StartupGate.class);
+
+    private final ReplyScheduler replies;
+    private final AtomicLong turnedAway = new AtomicLong();
+    private volatile List<EventListener> handlers;
+
+    public StartupGate(ReplyScheduler replies) {
+        this.replies = replies;
+    }
+
+    public void open(EventListener... handlers) {
+        this.handlers = List.of(handlers);
+        logger.info("Accepting interactions ({} arrived while starting)", turnedAway.get());
+    }
+
+    @Override
+    public void onEvent(GenericEvent event) {
+        List<EventListener> ready = handlers;
+        if (ready != null) {
+            for (EventListener handler : ready) {
+                try {
+                    handler.onEvent(event);
+                } catch (RuntimeException e) {
+                    logger.error("Handler {} failed on {}", handler.getClass().getSimpleName(),
+                        event.getClass().getSimpleName(), e);
+                }
+            }
+            return;
+        }
+
+        if (event instanceof CommandAutoCompleteInteractionEvent) {
+            replies.respond(((CommandAutoCompleteInteractionEvent) event).replyChoices());
+        } else if (event instanceof IReplyCallback) {
+            turnedAway.incrementAndGet();
+            replies.respond(((IReplyCallback) event)
+                .reply("Der Bot startet gerade, bitte versuche es gleich noch einmal.")
+                .setEphemeral(true));
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package com.amongthesloths.trophybot;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the prepared statements of one pooled connection open for reuse.
+ * {@link #getConnection()} returns a view of the connection whose {@code prepareStatement} hands out cached
+ * statements; closing such a statement only clears its parameters and returns it to the cache. A connection is only
+ * used by one lease at a time, so the cache itself needs no locking.
+ */
+public final class StatementCache {
+    private static final Logger logger = LoggerFactory.getLogger(StatementCache.class);
+
+    private final Connection connection;
+    private final Connection view;
+    private final int capacity;
+    private final Stats stats;
+    private final Map<String, Entry> statements;
+
+    StatementCache(Connection connection, int capacity, Stats stats) {
+        this.connection = connection;
+        this.capacity = capacity;
+        this.stats = stats;
+        this.statements = new LinkedHashMap<>(16, 0.75f, true);
+        this.view = (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+            new Class<?>[]{Connection.class}, new ConnectionHandler());
+    }
+
+    Connection getConnection() {
+        return view;
+    }
+
+    private PreparedStatement prepare(String sql, int generatedKeys) throws SQLException {
+        if (capacity <= 0) {
+            stats.prepared.incrementAndGet();
+            return connection.prepareStatement(sql, generatedKeys);
+        }
+
+        String key = generatedKeys + ":" + sql;
+        Entry entry = statements.get(key);
+        if (entry != null && !entry.inUse && !entry.statement.isClosed()) {
+            stats.reused.incrementAndGet();
+            return entry.checkOut();
+        }
+        stats.prepared.incrementAndGet();
+        PreparedStatement statement = connection.prepareStatement(sql, generatedKeys);
+        if (entry != null && entry.inUse) {
+            // Dieselbe Abfrage ist in dieser Lease noch offen, die zweite Instanz wird nicht gecacht
+            return statement;
+        }
+
+        entry = new Entry(statement);
+        statements.put(key, entry);
+        evictOverflow();
+        return entry.checkOut();
+    }
+
+    private void evictOverflow() {
+        Iterator<Entry> iterator = statements.values().iterator();
+        while (statements.size() > capacity && iterator.hasNext()) {
+            Entry eldest = iterator.next();
+            if (eldest.inUse) {
+                continue;
+            }
+            iterator.remove();
+            stats.evicted.incrementAndGet();
+            closeQuietly(eldest.statement);
+        }
+    }
+
+    private static void closeQuietly(Statement statement) {
+        try {
+            statement.close();
+        } catch (SQLException e) {
+            logger.warn("Failed to close cached statement", e);
+        }
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private final class ConnectionHandler implements InvocationHandler {
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "prepareStatement":
+                    if (args.length == 1) {
+                        return prepare((String) args[0], Statement.NO_GENERATED_KEYS);
+                    }
+                    if (args.length == 2 && method.getParameterTypes()[1] == int.class) {
+                        return prepare((String) args[0], (Integer) args[1]);
+                    }
+                    break;
+                case "close":
+                    // Die Verbindung gehört dem Pool
+                    return null;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    break;
+            }
+            return StatementCache.invoke(connection, method, args);
+        }
+    }
+
+    private final class Entry {
+        private final PreparedStatement statement;
+        private boolean inUse;
+
+        private Entry(PreparedStatement statement) {
+            this.statement = statement;
+        }
+
+        private PreparedStatement checkOut() {
+            inUse = true;
+            return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                new Class<?>[]{PreparedStatement.class}, new StatementHandler(this));
+        }
+    }
+
+    private final class StatementHandler implements InvocationHandler {
+        private final Entry entry;
+        private boolean returned;
+
+        private StatementHandler(Entry entry) {
+            this.entry = entry;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!returned) {
+                        returned = true;
+                        giveBack();
+                    }
+                    return null;
+                case "isClosed":
+                    return returned || entry.statement.isClosed();
+                case "getConnection":
+                    return view;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    if (returned) {
+                        throw new SQLException("Statement has already been closed");
+                    }
+                    return StatementCache.invoke(entry.statement, method, args);
+            }
+        }
+
+        private void giveBack() {
+            try {
+                entry.statement.clearParameters();
+                entry.statement.clearBatch();
+                entry.inUse = false;
+            } catch (SQLException e) {
+                // Ein Statement in unklarem Zustand wird nicht wiederverwendet
+                statements.values().remove(entry);
+                closeQuietly(entry.statement);
+            }
+        }
+    }
+
+    /**
+     * Prepare and reuse counts of all caches of a pool.
+     */
+    public static final class Stats {
+        private final AtomicLong prepared = new AtomicLong();
+        private final AtomicLong reused = new AtomicLong();
+        private final AtomicLong evicted = new AtomicLong();
+
+        public long getPrepared() {
+            return prepared.get();
+        }
+
+        public long getReused() {
+            return reused.get();
+        }
+
+        public long getEvicted() {
+            return evicted.get();
+        }
+
+        @Override
+        public String toString() {
+            long total = prepared.get() + reused.get();
+            return String.format("prepared=%d, reused=%d (%.1f%%), evicted=%d",
+                prepared.get(), reused.get(), total == 0 ? 0.0 : 100.0 * reused.get() / total, evicted.get());
+        }
+    }
+}
@@ -1,68 +1,263 @@
 package com.amongthesloths.trophybot;
 
+import com.zaxxer.hikari.HikariConfigMXBean;
+import com.zaxxer.hikari.HikariPoolMXBean;
 import net.dv8tion.jda.api.JDA;
-import net.dv8tion.jda.api.JDABuilder;
 import net.dv8tion.jda.api.entities.Activity;
 import net.dv8tion.jda.api.interactions.commands.OptionType;
 import net.dv8tion.jda.api.interactions.commands.build.Commands;
 import net.dv8tion.jda.api.interactions.commands.build.SubcommandData;
+import net.dv8tion.jda.api.requests.GatewayIntent;
+import net.dv8tion.jda.api.sharding.DefaultShardManagerBuilder;
+import net.dv8tion.jda.api.sharding.ShardManager;
+import net.dv8tion.jda.api.utils.ChunkingFilter;
+import net.dv8tion.jda.api.utils.ConcurrentSessionController;
+import net.dv8tion.jda.api.utils.MemberCachePolicy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.net.URL;
+import java.io.IOException;
+import java.nio.file.Path;
 import java.sql.SQLException;
 
 public class TrophyBot {
     private static final Logger logger = LoggerFactory.getLogger(TrophyBot.class);
-    private final JDA jda;
-    private final DatabaseManager databaseManager;
+    private final ShardManager shardManager;
+    private final TrophyStore databaseManager;
     private final ConfigManager configManager;
+    private final InteractionExecutor interactionExecutor;
+    private final MetricsServer metricsServer;
+    private final Path databaseFile;
+    private final Path warmStartFile;
 
     public TrophyBot(String token) {
         logger.info("Initializing Trophy Bot...");
         
-        // Bot-Konfiguration laden
-        URL configPath = TrophyBot.class.getClassLoader().getResource("config.json");
-        if (configPath == null) {
-            throw new RuntimeException("Could not find config.json in resources");
-        }
-        this.configManager = new ConfigManager(configPath);
-        logger.info("Configuration loaded successfully");
+        // Bot-Konfiguration laden, Komponenten lesen beim Start alle Werte aus demselben Stand
+        String configPath = System.getenv("TROPHYBOT_CONFIG");
+        this.configManager = new ConfigManager(Path.of(configPath != null ? configPath : "config.json"));
+        ConfigSnapshot config = configManager.current();
         
+        this.interactionExecutor = new InteractionExecutor(
+            config.getExecutorWorkers(),
+            config.getExecutorQueueCapacity(),
+            config.getExecutorPerGuildLimit()
+        );
+        ReplyScheduler replies = new ReplyScheduler(
+            config.getReplyMaxInFlight(), config.getReplyQueueCapacity());
+        MemberNameCache memberNames = new MemberNameCache(
+            config.getMemberCacheSize(), config.getMemberCacheTtlMinutes());
+        StartupGate gate = new StartupGate(replies);
+
+        try {
+            // Shards teilen sich Datenbank, Caches und Handler; Discord gibt vor, wie viele gleichzeitig starten dürfen.
+            // Die Shards verbinden sich bereits, während die Datenbank geladen wird, bis dahin hält das Gate Interaktionen auf
+            DefaultShardManagerBuilder builder = DefaultShardManagerBuilder.createDefault(token)
+                    .setShardsTotal(config.getShardsTotal())
+                    .setSessionController(new ConcurrentSessionController())
+                    // Privilegierter Intent, nötig um die Mitglieder einer Rolle zu laden (award-bulk) und für die
+                    // Mitglieder-Events, die den Namens-Cache aktuell halten
+                    .enableIntents(GatewayIntent.GUILD_MEMBERS)
+                    // Mitglieder bleiben im JDA-Cache, sobald sie einmal gesehen wurden, sonst liefert JDA keine
+                    // Nickname-Events für sie; beim Start wird nicht die ganze Mitgliederliste geladen
+                    .setMemberCachePolicy(MemberCachePolicy.ALL)
+                    .setChunkingFilter(ChunkingFilter.NONE)
+                    .setActivity(Activity.playing("Trophäen vergeben"))
+                    .addEventListeners(
+                        gate,
+                        memberNames,
+                        new ShardMonitor(TrophyBot::registerCommands)
+                    );
+            if (!config.getShardIds().isEmpty()) {
+                builder.setShards(config.getShardIds());
+            }
+            this.shardManager = builder.build();
+            memberNames.attach(shardManager);
+            logger.info("Shard manager started with {} shards", shardManager.getShardsTotal());
+        } catch (Exception e) {
+            logger.error("Failed to initialize JDA", e);
+            throw new RuntimeException("Failed to initialize JDA", e);
+        }
+
+        // Der Warmstart gilt nur für SQLite, PostgreSQL hält außer dem Katalog nichts im Speicher
+        this.databaseFile = config.isPostgresDatabase() ? null : ConnectionPool.sqliteFile(config.getDatabaseUrl());
+        this.warmStartFile = databaseFile != null && !config.getWarmStartFile().isEmpty()
+            ? Path.of(config.getWarmStartFile()) : null;
         try {
-            // Datenbankverbindung aufbauen
-            this.databaseManager = new DatabaseManager(
-                configManager.getDatabaseUrl(),
-                configManager.getDatabaseUser(),
-                configManager.getDatabasePassword()
-            );
+            // Datenbankverbindung aufbauen, das Backend ergibt sich aus der URL
+            if (config.isPostgresDatabase()) {
+                this.databaseManager = new PostgresTrophyStore(
+                    config.getDatabaseUrl(),
+                    config.getDatabaseUser(),
+                    config.getDatabasePassword(),
+                    config.getDatabaseMaxPoolSize(),
+                    config.getDatabaseAcquireTimeoutMillis()
+                );
+            } else {
+                // Vor dem Öffnen lesen: ab dann gibt es ein WAL und der Snapshot ließe sich nicht mehr prüfen
+                WarmStartSnapshot warmStart = warmStartFile != null
+                    ? WarmStartSnapshot.read(warmStartFile, databaseFile) : null;
+                ConnectionPool pool = new ConnectionPool(
+                    config.getDatabaseUrl(),
+                    config.getDatabaseUser(),
+                    config.getDatabasePassword(),
+                    config.getDatabaseReaderPoolSize(),
+                    config.getDatabaseAcquireTimeoutMillis(),
+                    config.getDatabaseStatementCacheSize()
+                );
+                this.databaseManager = new DatabaseManager(
+                    pool,
+                    config.getLegacyGuildId(),
+                    config.getWriteQueueCapacity(),
+                    config.getWriteQueueMaxBatch(),
+                    config.getWriteQueueMaxDelayMillis(),
+                    warmStart
+                );
+            }
             logger.info("Database connection established successfully");
         } catch (SQLException e) {
             logger.error("Failed to initialize database connection", e);
+            shardManager.shutdown();
             throw new RuntimeException("Failed to initialize database", e);
         }
-        
+
+        // Vor dem Embed-Cache registrieren, damit eine nach einer Änderung gerenderte Ansicht keine ältere Abfrage teilt
+        TrophyStore store = config.isSingleFlightEnabled()
+            ? new SingleFlightTrophyStore(databaseManager, config.isPostgresDatabase()) : databaseManager;
+        EmbedCache embedCache = new EmbedCache(config.getEmbedCacheSize());
+        store.addChangeListener(embedCache);
+        memberNames.setOnNamesChanged(embedCache::membersChanged);
+        ViewRenderer views = new ViewRenderer(store, embedCache, memberNames);
+
+        DatabaseMaintenance maintenance = new DatabaseMaintenance(
+            databaseManager, Path.of(config.getBackupDirectory()));
+
+        gate.open(
+            new CommandHandler(store, views, interactionExecutor, maintenance, replies),
+            new ButtonInteractionHandler(store, views, interactionExecutor, replies)
+        );
+
+        registerMetrics(embedCache, memberNames, replies);
+        int metricsPort = config.getMetricsPort();
         try {
-            // JDA-Instance initialisieren
-            this.jda = JDABuilder.createDefault(token)
-                    .setActivity(Activity.playing("Trophäen vergeben"))
-                    .addEventListeners(
-                        new CommandHandler(databaseManager),
-                        new ButtonInteractionHandler(databaseManager)
-                    )
-                    .build();
-            logger.info("JDA instance initialized successfully");
-                    
-            // Slash-Commands registrieren
-            registerCommands();
-            logger.info("Slash commands registered successfully");
-        } catch (Exception e) {
-            logger.error("Failed to initialize JDA", e);
-            throw new RuntimeException("Failed to initialize JDA", e);
+            this.metricsServer = metricsPort > 0 ? new MetricsServer(config.getMetricsHost(), metricsPort) : null;
+        } catch (IOException e) {
+            logger.error("Failed to start metrics endpoint on port {}", metricsPort, e);
+            throw new RuntimeException("Failed to start metrics endpoint", e);
+        }
+
+        subscribeToConfig(embedCache, memberNames, replies);
+        try {
+            configManager.watch();
+        } catch (IOException e) {
+            logger.warn("Could not watch the config file, changes take effect after a restart", e);
         }
+        Runtime.getRuntime().addShutdownHook(new Thread(this::shutdown, "trophybot-shutdown"));
     }
 
-    private void registerCommands() {
+    // Beim Beenden (SIGTERM, Strg+C) erst Interaktionen abarbeiten und Schreibvorgänge committen, dann den Snapshot schreiben
+    private void shutdown() {
+        logger.info("Shutting down Trophy Bot...");
+        configManager.close();
+        shardManager.shutdown();
+        interactionExecutor.shutdown();
+        if (metricsServer != null) {
+            metricsServer.close();
+        }
+        databaseManager.close();
+
+        if (warmStartFile != null && databaseManager instanceof DatabaseManager) {
+            DatabaseManager sqlite = (DatabaseManager) databaseManager;
+            try {
+                WarmStartSnapshot.write(warmStartFile, databaseFile,
+                    sqlite.getCatalog().snapshot(), sqlite.getLeaderboardCounts());
+            } catch (IOException e) {
+                logger.warn("Failed to write the warm start snapshot", e);
+            }
+        }
+        logger.info("Trophy Bot stopped");
+    }
+
+    // Stellschrauben, die sich ohne Neustart ändern lassen; alles andere steht in ConfigManager.RESTART_REQUIRED
+    private void subscribeToConfig(EmbedCache embedCache, MemberNameCache memberNames, ReplyScheduler replies) {
+        configManager.subscribe(config -> embedCache.setMaxEntries(config.getEmbedCacheSize()));
+        configManager.subscribe(config ->
+            memberNames.setLimits(config.getMemberCacheSize(), config.getMemberCacheTtlMinutes()));
+        configManager.subscribe(config ->
+            interactionExecutor.resize(config.getExecutorWorkers(), config.getExecutorPerGuildLimit()));
+        configManager.subscribe(config -> replies.setMaxInFlight(config.getReplyMaxInFlight()));
+
+        if (databaseManager instanceof DatabaseManager) {
+            GroupCommitWriter writeQueue = ((DatabaseManager) databaseManager).getWriteQueue();
+            configManager.subscribe(config ->
+                writeQueue.setBatching(config.getWriteQueueMaxBatch(), config.getWriteQueueMaxDelayMillis()));
+        } else if (databaseManager instanceof PostgresTrophyStore) {
+            HikariConfigMXBean pool = ((PostgresTrophyStore) databaseManager).getDataSource().getHikariConfigMXBean();
+            configManager.subscribe(config -> pool.setMaximumPoolSize(config.getDatabaseMaxPoolSize()));
+        }
+    }
+
+    private void registerMetrics(EmbedCache embedCache, MemberNameCache memberNames, ReplyScheduler replies) {
+        ShardMonitor.registerMetrics(shardManager);
+        Metrics.gauge("trophybot_executor_queue_depth", "Interactions waiting for a worker",
+            interactionExecutor::getQueueDepth);
+        Metrics.gauge("trophybot_executor_active_workers", "Workers currently handling an interaction",
+            interactionExecutor::getActiveWorkers);
+        Metrics.functionCounter("trophybot_executor_rejected_total", "Interactions rejected because the bot was saturated",
+            interactionExecutor::getRejectedCount);
+        Metrics.functionCounter("trophybot_executor_queue_wait_seconds_total", "Total time interactions waited for a worker",
+            () -> interactionExecutor.getTotalQueueWaitNanos() / 1e9);
+        Metrics.gauge("trophybot_reply_queue_depth", "Replies waiting in the scheduler per route", "route",
+            replies::getQueueDepths);
+        Metrics.gauge("trophybot_reply_in_flight", "Replies handed to JDA and not yet acknowledged per route", "route",
+            replies::getInFlight);
+        Metrics.gauge("trophybot_reply_route_utilization", "Share of the in-flight limit a route is using", "route",
+            replies::getUtilization);
+        Metrics.functionCounter("trophybot_reply_overflow_total", "Replies sent past the scheduler because its queue was full",
+            replies::getOverflowCount);
+
+        if (databaseManager instanceof DatabaseManager) {
+            registerPoolMetrics(((DatabaseManager) databaseManager).getPool());
+            GroupCommitWriter writeQueue = ((DatabaseManager) databaseManager).getWriteQueue();
+            Metrics.gauge("trophybot_db_write_queue_depth", "Awards and removals waiting for the next group commit",
+                writeQueue::getQueueDepth);
+        } else if (databaseManager instanceof PostgresTrophyStore) {
+            HikariPoolMXBean pool = ((PostgresTrophyStore) databaseManager).getDataSource().getHikariPoolMXBean();
+            Metrics.gauge("trophybot_db_pool_idle_connections", "Pooled PostgreSQL connections currently not leased",
+                pool::getIdleConnections);
+            Metrics.gauge("trophybot_db_pool_pending_threads", "Threads waiting for a PostgreSQL connection",
+                pool::getThreadsAwaitingConnection);
+        }
+
+        Metrics.gauge("trophybot_embed_cache_entries", "Rendered views held in the embed cache", embedCache::size);
+        Metrics.functionCounter("trophybot_embed_cache_hits_total", "Embed cache hits", embedCache::getHitCount);
+        Metrics.functionCounter("trophybot_embed_cache_misses_total", "Embed cache misses", embedCache::getMissCount);
+        Metrics.gauge("trophybot_member_cache_entries", "Guild members held in the name cache", memberNames::size);
+        Metrics.functionCounter("trophybot_member_cache_misses_total", "Member lookups that were not cached or expired",
+            memberNames::getMissCount);
+        Metrics.functionCounter("trophybot_member_chunk_requests_total", "Gateway member chunk requests for cache misses",
+            memberNames::getChunkRequestCount);
+    }
+
+    private static void registerPoolMetrics(ConnectionPool pool) {
+        Metrics.gauge("trophybot_db_pool_idle_readers", "Read connections currently not leased",
+            pool::getIdleReaderCount);
+        Metrics.functionCounter("trophybot_db_pool_writer_wait_seconds_total", "Total time spent waiting for the write connection",
+            () -> pool.getWriterStats().getTotalWaitNanos() / 1e9);
+        Metrics.functionCounter("trophybot_db_pool_reader_wait_seconds_total", "Total time spent waiting for a read connection",
+            () -> pool.getReaderStats().getTotalWaitNanos() / 1e9);
+        Metrics.functionCounter("trophybot_db_pool_timeouts_total", "Connection acquisitions that timed out",
+            () -> pool.getWriterStats().getTimeouts() + pool.getReaderStats().getTimeouts());
+        Metrics.functionCounter("trophybot_db_statements_prepared_total", "Statements prepared because no cached one was available",
+            () -> pool.getStatementStats().getPrepared());
+        Metrics.functionCounter("trophybot_db_statements_reused_total", "Statements served from the per-connection statement cache",
+            () -> pool.getStatementStats().getReused());
+        Metrics.functionCounter("trophybot_db_statements_evicted_total", "Cached statements closed to stay within the cache size",
+            () -> pool.getStatementStats().getEvicted());
+    }
+
+    // Globale Befehle gelten für alle Shards und werden deshalb nur über einen registriert
+    private static void registerCommands(JDA jda) {
         logger.debug("Registering slash commands...");
         jda.updateCommands().addCommands(
             Commands.slash("trophy", "Trophäen-bezogene Befehle")
@@ -73,18 +268,27 @@ public class TrophyBot {
                         .addOption(OptionType.STRING, "emoji", "Emoji für die Trophäe", true),
                     new SubcommandData("award", "Vergebe eine Trophäe an einen Spieler")
                         .addOption(OptionType.USER, "user", "Der Benutzer, der die Trophäe erhalten soll", true)
-                        .addOption(OptionType.INTEGER, "trophy_id", "ID der zu vergebenden Trophäe", true),
+                        .addOption(OptionType.INTEGER, "trophy_id", "ID der zu vergebenden Trophäe", true, true),
+                    new SubcommandData("award-bulk", "Vergebe eine Trophäe an eine Rolle oder mehrere Spieler")
+                        .addOption(OptionType.INTEGER, "trophy_id", "ID der zu vergebenden Trophäe", true, true)
+                        .addOption(OptionType.ROLE, "role", "Alle Mitglieder dieser Rolle erhalten die Trophäe", false)
+                        .addOption(OptionType.STRING, "users", "Erwähnungen oder IDs der Benutzer, getrennt durch Leerzeichen", false),
                     new SubcommandData("list", "Zeige alle verfügbaren Trophäen"),
                     new SubcommandData("show", "Zeige Details einer Trophäe")
-                        .addOption(OptionType.INTEGER, "trophy_id", "ID der anzuzeigenden Trophäe", true),
+                        .addOption(OptionType.INTEGER, "trophy_id", "ID der anzuzeigenden Trophäe", true, true),
                     new SubcommandData("profile", "Zeige Trophäen eines Spielers")
                         .addOption(OptionType.USER, "user", "Der Benutzer, dessen Profil angezeigt werden soll", false),
                     new SubcommandData("leaderboard", "Zeige das Trophy-Leaderboard"),
                         new SubcommandData("remove", "Loesche eine Trophy eines Users.")
                                 .addOption(OptionType.USER, "user", "Der Benutzer, der die Trophäe verlieren soll", true)
-                                .addOption(OptionType.INTEGER, "trophy_id", "ID der zu vergebenden Trophäe", true)
+                                .addOption(OptionType.INTEGER, "trophy_id", "ID der zu vergebenden Trophäe", true, true)
                         ),
             Commands.slash("admin", "Administrative Befehle (nur für Admins)")
+                .addSubcommands(
+                    new SubcommandData("reset", "Beende die Saison: archiviere alle Vergaben und setze das Leaderboard zurück"),
+                    new SubcommandData("backup", "Sichere die Datenbank als komprimierten Snapshot"),
+                    new SubcommandData("rebuild", "Baue das Leaderboard dieses Servers aus seinen Vergaben neu auf")
+                )
         ).queue(
             success -> logger.info("Successfully registered slash commands"),
             failure -> logger.error("Failed to register slash commands", failure)
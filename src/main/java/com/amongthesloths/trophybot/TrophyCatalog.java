@@ -0,0 +1,148 @@
+package com.amongthesloths.trophybot;
+
+import com.amongthesloths.trophybot.models.Page;
+import com.amongthesloths.trophybot.models.Trophy;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory copy of the trophies table. Writes go through the TrophyStore, which updates the catalog after the
+ * database commit, so reads never have to touch the database. Trophy ids are global, the sorted snapshots are kept
+ * per guild.
+ */
+public class TrophyCatalog {
+    private final Map<Integer, Trophy> trophiesById = new ConcurrentHashMap<>();
+    private final Map<String, List<Trophy>> sortedTrophiesByGuild = new ConcurrentHashMap<>();
+    private final Map<String, TrophySearchIndex> searchIndexes = new ConcurrentHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public synchronized void load(List<Trophy> trophies) {
+        trophiesById.clear();
+        sortedTrophiesByGuild.clear();
+        searchIndexes.clear();
+        Map<String, List<Trophy>> byGuild = new HashMap<>();
+        for (Trophy trophy : trophies) {
+            trophiesById.put(trophy.getId(), trophy);
+            byGuild.computeIfAbsent(trophy.getGuildId(), id -> new ArrayList<>()).add(trophy);
+        }
+        for (Map.Entry<String, List<Trophy>> entry : byGuild.entrySet()) {
+            entry.getValue().sort(Comparator.comparingInt(Trophy::getId));
+            List<Trophy> snapshot = List.copyOf(entry.getValue());
+            sortedTrophiesByGuild.put(entry.getKey(), snapshot);
+            searchIndexes.put(entry.getKey(), new TrophySearchIndex(snapshot));
+        }
+    }
+
+    public Trophy get(String guildId, int trophyId) {
+        Trophy trophy = trophiesById.get(trophyId);
+        if (trophy != null && trophy.getGuildId().equals(guildId)) {
+            hits.incrementAndGet();
+            return trophy;
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    public List<Trophy> getAll(String guildId) {
+        hits.incrementAndGet();
+        return sortedTrophiesByGuild.getOrDefault(guildId, List.of());
+    }
+
+    /**
+     * Autocomplete lookup by id prefix or name, answered entirely from memory.
+     */
+    public List<Trophy> search(String guildId, String query, int limit) {
+        hits.incrementAndGet();
+        return searchIndexes.getOrDefault(guildId, TrophySearchIndex.EMPTY).search(query, limit);
+    }
+
+    /**
+     * Keyset page over the id-sorted snapshot: forward returns trophies with id > cursor, backward those with id < cursor.
+     */
+    public Page<Trophy> page(String guildId, int cursor, boolean forward, int limit) {
+        hits.incrementAndGet();
+        List<Trophy> snapshot = sortedTrophiesByGuild.getOrDefault(guildId, List.of());
+        List<Trophy> rows;
+        if (forward) {
+            int from = indexAfter(snapshot, cursor);
+            rows = snapshot.subList(from, Math.min(from + limit + 1, snapshot.size()));
+        } else {
+            int to = indexAfter(snapshot, cursor - 1);
+            rows = snapshot.subList(Math.max(0, to - limit - 1), to);
+        }
+        return Page.fromSeek(rows, limit, forward, cursor > 0);
+    }
+
+    private static int indexAfter(List<Trophy> snapshot, int id) {
+        int low = 0;
+        int high = snapshot.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (snapshot.get(mid).getId() <= id) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    public synchronized void put(Trophy trophy) {
+        Trophy previous = trophiesById.put(trophy.getId(), trophy);
+        if (previous != null && !previous.getGuildId().equals(trophy.getGuildId())) {
+            updateSnapshot(previous.getGuildId(), previous.getId(), null);
+        }
+        updateSnapshot(trophy.getGuildId(), trophy.getId(), trophy);
+    }
+
+    public synchronized void remove(int trophyId) {
+        Trophy removed = trophiesById.remove(trophyId);
+        if (removed != null) {
+            updateSnapshot(removed.getGuildId(), trophyId, null);
+        }
+    }
+
+    // Copy-on-write: Leser sehen immer eine vollständige, unveränderliche Liste
+    private void updateSnapshot(String guildId, int trophyId, Trophy replacement) {
+        List<Trophy> snapshot = new ArrayList<>(sortedTrophiesByGuild.getOrDefault(guildId, List.of()));
+        snapshot.removeIf(trophy -> trophy.getId() == trophyId);
+        if (replacement != null) {
+            snapshot.add(replacement);
+            snapshot.sort(Comparator.comparingInt(Trophy::getId));
+        }
+        List<Trophy> updated = List.copyOf(snapshot);
+        sortedTrophiesByGuild.put(guildId, updated);
+        searchIndexes.put(guildId, new TrophySearchIndex(updated));
+    }
+
+    public int size() {
+        return trophiesById.size();
+    }
+
+    // Alle Trophäen aller Server, z.B. für den Warmstart-Snapshot
+    public List<Trophy> snapshot() {
+        return new ArrayList<>(trophiesById.values());
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("size=%d, guilds=%d, hits=%d, misses=%d",
+            trophiesById.size(), sortedTrophiesByGuild.size(), hits.get(), misses.get());
+    }
+}
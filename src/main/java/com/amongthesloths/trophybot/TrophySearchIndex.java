@@ -0,0 +1,176 @@
+package com.amongthesloths.trophybot;
+
+import com.amongthesloths.trophybot.models.Trophy;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Immutable search index over the trophies of one guild, used for slash-command autocomplete.
+ * Digits match id prefixes, short queries match the start of a word in the name and longer queries match anywhere in
+ * the name via a trigram index. TrophyCatalog builds a new index whenever the guild's trophies change.
+ */
+public final class TrophySearchIndex {
+    static final TrophySearchIndex EMPTY = new TrophySearchIndex(List.of());
+
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+    private static final Pattern WORD_SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    // Nach id sortiert, Positionen in dieser Liste sind die Postings der anderen Strukturen
+    private final List<Trophy> trophies;
+    private final String[] normalizedNames;
+    private final String[] idStrings;
+    private final int[] idOwners;
+    private final String[] words;
+    private final int[] wordOwners;
+    private final Map<String, int[]> trigrams;
+
+    TrophySearchIndex(List<Trophy> trophiesSortedById) {
+        this.trophies = trophiesSortedById;
+        int size = trophies.size();
+        this.normalizedNames = new String[size];
+        String[] ids = new String[size];
+
+        List<String> wordList = new ArrayList<>();
+        List<Integer> ownerList = new ArrayList<>();
+        Map<String, List<Integer>> trigramLists = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            Trophy trophy = trophies.get(i);
+            ids[i] = String.valueOf(trophy.getId());
+            normalizedNames[i] = normalize(trophy.getName());
+            for (String word : WORD_SEPARATOR.split(normalizedNames[i])) {
+                if (!word.isEmpty()) {
+                    wordList.add(word);
+                    ownerList.add(i);
+                }
+            }
+            for (String trigram : trigramsOf(normalizedNames[i])) {
+                trigramLists.computeIfAbsent(trigram, t -> new ArrayList<>()).add(i);
+            }
+        }
+
+        // Ids als Text sortiert, damit "12" auch 120 und 1200 findet
+        Integer[] idOrder = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            idOrder[i] = i;
+        }
+        Arrays.sort(idOrder, Comparator.comparing(i -> ids[i]));
+        this.idStrings = new String[size];
+        this.idOwners = new int[size];
+        for (int i = 0; i < size; i++) {
+            idStrings[i] = ids[idOrder[i]];
+            idOwners[i] = idOrder[i];
+        }
+
+        Integer[] wordOrder = new Integer[wordList.size()];
+        for (int i = 0; i < wordOrder.length; i++) {
+            wordOrder[i] = i;
+        }
+        Arrays.sort(wordOrder, Comparator.comparing(wordList::get));
+        this.words = new String[wordOrder.length];
+        this.wordOwners = new int[wordOrder.length];
+        for (int i = 0; i < wordOrder.length; i++) {
+            words[i] = wordList.get(wordOrder[i]);
+            wordOwners[i] = ownerList.get(wordOrder[i]);
+        }
+
+        this.trigrams = new HashMap<>(trigramLists.size() * 2);
+        for (Map.Entry<String, List<Integer>> entry : trigramLists.entrySet()) {
+            trigrams.put(entry.getKey(), entry.getValue().stream().mapToInt(Integer::intValue).toArray());
+        }
+    }
+
+    /**
+     * @return up to {@code limit} trophies matching the query, best matches (id or word prefix) first
+     */
+    public List<Trophy> search(String query, int limit) {
+        String normalized = normalize(query == null ? "" : query.trim());
+        if (normalized.isEmpty()) {
+            return trophies.subList(0, Math.min(limit, trophies.size()));
+        }
+
+        Set<Integer> matches = new LinkedHashSet<>();
+        if (normalized.chars().allMatch(Character::isDigit)) {
+            collectPrefix(idStrings, idOwners, normalized, matches, limit);
+        }
+        collectPrefix(words, wordOwners, normalized, matches, limit);
+        if (matches.size() < limit && normalized.length() >= 3) {
+            collectSubstring(normalized, matches, limit);
+        }
+
+        List<Trophy> result = new ArrayList<>(matches.size());
+        for (int index : matches) {
+            result.add(trophies.get(index));
+        }
+        return result;
+    }
+
+    public int size() {
+        return trophies.size();
+    }
+
+    private static void collectPrefix(String[] sortedKeys, int[] owners, String prefix, Set<Integer> matches, int limit) {
+        int from = lowerBound(sortedKeys, prefix);
+        for (int i = from; i < sortedKeys.length && matches.size() < limit && sortedKeys[i].startsWith(prefix); i++) {
+            matches.add(owners[i]);
+        }
+    }
+
+    private static int lowerBound(String[] sorted, String key) {
+        int low = 0;
+        int high = sorted.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sorted[mid].compareTo(key) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private void collectSubstring(String query, Set<Integer> matches, int limit) {
+        // Kürzeste Posting-Liste als Kandidaten, der Treffer wird danach am Namen bestätigt
+        int[] candidates = null;
+        for (String trigram : trigramsOf(query)) {
+            int[] postings = trigrams.get(trigram);
+            if (postings == null) {
+                return;
+            }
+            if (candidates == null || postings.length < candidates.length) {
+                candidates = postings;
+            }
+        }
+        if (candidates == null) {
+            return;
+        }
+        for (int i = 0; i < candidates.length && matches.size() < limit; i++) {
+            if (normalizedNames[candidates[i]].contains(query)) {
+                matches.add(candidates[i]);
+            }
+        }
+    }
+
+    private static Set<String> trigramsOf(String text) {
+        Set<String> result = new LinkedHashSet<>();
+        for (int i = 0; i + 3 <= text.length(); i++) {
+            result.add(text.substring(i, i + 3));
+        }
+        return result;
+    }
+
+    static String normalize(String text) {
+        String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+        return DIACRITICS.matcher(decomposed).replaceAll("").toLowerCase(Locale.ROOT).replace("ß", "ss");
+    }
+}
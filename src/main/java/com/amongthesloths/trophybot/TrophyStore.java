@@ -0,0 +1,215 @@
+package com.amongthesloths.trophybot;
+
+import com.amongthesloths.trophybot.models.Page;
+import com.amongthesloths.trophybot.models.Trophy;
+import com.amongthesloths.trophybot.models.UserTrophy;
+
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Storage backend for trophies, awards and leaderboards. {@link DatabaseManager} stores everything in a single SQLite
+ * file, {@link PostgresTrophyStore} in a PostgreSQL server that several bot instances can share.
+ * All data is scoped to a guild.
+ */
+public interface TrophyStore extends AutoCloseable {
+    Trophy createTrophy(String guildId, String name, String description, String emoji, String createdBy) throws SQLException;
+
+    default boolean awardTrophy(String guildId, String userId, int trophyId, String awardedBy) throws SQLException {
+        return awardTrophy(guildId, userId, trophyId, awardedBy, null);
+    }
+
+    /**
+     * Awards a trophy unless the user already has it.
+     *
+     * @param idempotencyKey optional key of the request, e.g. the interaction id; a repeated key returns the first
+     *                       result without touching the database
+     * @return true if the award was new
+     */
+    boolean awardTrophy(String guildId, String userId, int trophyId, String awardedBy, String idempotencyKey) throws SQLException;
+
+    default BatchAwardResult awardTrophies(String guildId, Collection<String> userIds, int trophyId, String awardedBy) throws SQLException {
+        return awardTrophies(guildId, userIds, trophyId, awardedBy, null);
+    }
+
+    /**
+     * Awards a trophy to all users that do not have it yet.
+     *
+     * @param idempotencyKey optional key of the request, see {@link #awardTrophy(String, String, int, String, String)}
+     */
+    BatchAwardResult awardTrophies(String guildId, Collection<String> userIds, int trophyId, String awardedBy,
+                                   String idempotencyKey) throws SQLException;
+
+    /**
+     * @throws SQLException with the message "Trophy not found for this user" if the user does not have the trophy
+     */
+    void removeTrophy(String guildId, String userId, int trophyId) throws SQLException;
+
+    Trophy getTrophyById(String guildId, int trophyId) throws SQLException;
+
+    List<Trophy> getAllTrophies(String guildId) throws SQLException;
+
+    /**
+     * Autocomplete lookup by id prefix or name. Answered from memory, so it may run on the event thread.
+     */
+    List<Trophy> searchTrophies(String guildId, String query, int limit);
+
+    Page<Trophy> getTrophyPage(String guildId, int cursor, boolean forward, int limit) throws SQLException;
+
+    Page<UserTrophy> getTrophyWinnersPage(String guildId, int trophyId, long cursor, boolean forward, int limit) throws SQLException;
+
+    Page<UserTrophy> getUserTrophiesPage(String guildId, String userId, long cursor, boolean forward, int limit) throws SQLException;
+
+    List<UserTrophy> getUserTrophies(String guildId, String userId) throws SQLException;
+
+    List<UserTrophy> getUsersWithTrophy(String guildId, int trophyId) throws SQLException;
+
+    /**
+     * Passes the awards of a user to the consumer row by row, newest first, without collecting them.
+     *
+     * @return number of rows passed to the consumer
+     */
+    int streamUserTrophies(String guildId, String userId, AwardRowConsumer consumer) throws SQLException;
+
+    /**
+     * Passes the winners of a trophy to the consumer row by row, newest first, without collecting them.
+     *
+     * @return number of rows passed to the consumer
+     */
+    int streamTrophyWinners(String guildId, int trophyId, AwardRowConsumer consumer) throws SQLException;
+
+    List<UserTrophyCount> getLeaderboard(String guildId, int limit) throws SQLException;
+
+    /**
+     * @return 1-based rank of the user, 0 if the user has no trophies
+     */
+    int getLeaderboardRank(String guildId, String userId) throws SQLException;
+
+    int getTrophyCount(String guildId, String userId) throws SQLException;
+
+    /**
+     * Recomputes user_trophy_counts from trophy_awards, fixing any drift.
+     *
+     * @return number of users with trophies
+     */
+    int rebuildLeaderboard() throws SQLException;
+
+    /**
+     * Recomputes the counts of a single guild, e.g. after its awards were archived.
+     */
+    int rebuildLeaderboard(String guildId) throws SQLException;
+
+    /**
+     * Ends the current season of a guild: creates the season row and fixes the range of awards that belong to it.
+     * Awards made after this call stay in the new season.
+     */
+    SeasonArchive startSeasonArchive(String guildId, String endedBy) throws SQLException;
+
+    /**
+     * Moves the oldest awards of the season (at most {@code limit}) into trophy_awards_archive in one short
+     * transaction. Counts are not touched, call {@link #rebuildLeaderboard(String)} once all chunks are moved.
+     *
+     * @return the number of archived awards, 0 once the season is fully archived
+     */
+    int archiveAwards(SeasonArchive season, int limit) throws SQLException;
+
+    void addChangeListener(ChangeListener listener);
+
+    @Override
+    void close();
+
+    /**
+     * Receives award rows from the stream methods. The trophy instance is shared, awardedAt is in epoch milliseconds
+     * or {@link UserTrophy#UNKNOWN_DATE}.
+     */
+    @FunctionalInterface
+    interface AwardRowConsumer {
+        void accept(long awardId, long userId, Trophy trophy, long awardedAt, long awardedBy);
+    }
+
+    /**
+     * Notified after a write has been committed, e.g. to invalidate rendered views.
+     */
+    interface ChangeListener {
+        void trophiesChanged(String guildId, int trophyId);
+
+        void awardsChanged(String guildId, int trophyId, Collection<String> userIds);
+
+        // Alle Daten eines Servers können sich geändert haben, z.B. nach dem Neuaufbau seines Leaderboards
+        void guildReloaded(String guildId);
+
+        void dataReloaded();
+    }
+
+    class UserTrophyCount {
+        private final long userId;
+        private final int count;
+
+        public UserTrophyCount(long userId, int count) {
+            this.userId = userId;
+            this.count = count;
+        }
+
+        public long getUserId() {
+            return userId;
+        }
+
+        public int getCount() {
+            return count;
+        }
+    }
+
+    class SeasonArchive {
+        private final long id;
+        private final String guildId;
+        private final long maxAwardId;
+        private final long awardCount;
+
+        public SeasonArchive(long id, String guildId, long maxAwardId, long awardCount) {
+            this.id = id;
+            this.guildId = guildId;
+            this.maxAwardId = maxAwardId;
+            this.awardCount = awardCount;
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        public String getGuildId() {
+            return guildId;
+        }
+
+        public long getMaxAwardId() {
+            return maxAwardId;
+        }
+
+        public long getAwardCount() {
+            return awardCount;
+        }
+    }
+
+    class BatchAwardResult {
+        private final int inserted;
+        private final int skipped;
+
+        public BatchAwardResult(int inserted, int skipped) {
+            this.inserted = inserted;
+            this.skipped = skipped;
+        }
+
+        public int getInserted() {
+            return inserted;
+        }
+
+        public int getSkipped() {
+            return skipped;
+        }
+
+        @Override
+        public String toString() {
+            return "inserted=" + inserted + ", skipped=" + skipped;
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package com.amongthesloths.trophybot;
+
+import com.amongthesloths.trophybot.models.Page;
+import com.amongthesloths.trophybot.models.Trophy;
+import com.amongthesloths.trophybot.models.UserTrophy;
+import net.dv8tion.jda.api.EmbedBuilder;
+import net.dv8tion.jda.api.entities.MessageEmbed;
+import net.dv8tion.jda.api.interactions.components.ActionRow;
+import net.dv8tion.jda.api.interactions.components.buttons.Button;
+import net.dv8tion.jda.api.utils.MarkdownSanitizer;
+import net.dv8tion.jda.api.utils.messages.MessageEditBuilder;
+import net.dv8tion.jda.api.utils.messages.MessageEditData;
+
+import java.awt.Color;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Renders the paginated trophy views. The cursor of each page is encoded in the button ids, so a page click only
+ * needs to read the next rows after (or before) that cursor.
+ */
+public final class TrophyViews {
+    public static final int PAGE_SIZE = 10;
+
+    private TrophyViews() {
+    }
+
+    public static MessageEditData trophyList(Page<Trophy> page, int pageNumber, int totalPages) {
+        EmbedBuilder eb = new EmbedBuilder()
+            .setTitle("🏆 Verfügbare Trophäen (Seite " + pageNumber + "/" + totalPages + ")")
+            .setColor(Color.YELLOW);
+
+        for (Trophy trophy : page.getItems()) {
+            String fieldTitle = String.format("%s %s (ID: %d)",
+                trophy.getEmoji(),
+                trophy.getName(),
+                trophy.getId());
+            eb.addField(fieldTitle, String.format("```%s```", trophy.getDescription()), false);
+        }
+
+        return new MessageEditBuilder()
+            .setEmbeds(eb.build())
+            .setComponents(paginationRow("trophy_list:", page, pageNumber, page.getFirst().getId(), page.getLast().getId()))
+            .build();
+    }
+
+    public static MessageEditData winners(Trophy trophy, Page<UserTrophy> page, int pageNumber,
+                                          Map<Long, MemberNameCache.MemberInfo> members) {
+        EmbedBuilder eb = new EmbedBuilder()
+            .setTitle("Gewinner der Trophäe: " + trophy.getEmoji() + " " + trophy.getName())
+            .setColor(Color.YELLOW);
+
+        if (page.isEmpty()) {
+            eb.setDescription("Diese Trophäe wurde noch an niemanden vergeben.");
+            return new MessageEditBuilder()
+                .setEmbeds(eb.build())
+                .setComponents(ActionRow.of(Button.primary("trophy_detail:" + trophy.getId(), "Zurück zu Details")))
+                .build();
+        }
+
+        StringBuilder winnersList = new StringBuilder("Folgende Spieler haben diese Trophäe erhalten:\n\n");
+        for (UserTrophy winner : page.getItems()) {
+            winnersList.append(userLabel(winner.getUserId(), members)).append(" - ")
+                .append(winner.getFormattedAwardDate()).append("\n");
+        }
+        eb.setDescription(winnersList.toString());
+        eb.setFooter("Seite " + pageNumber);
+
+        String prefix = "trophy_winners:" + trophy.getId() + ":";
+        return new MessageEditBuilder()
+            .setEmbeds(eb.build())
+            .setComponents(
+                paginationRow(prefix, page, pageNumber, page.getFirst().getAwardId(), page.getLast().getAwardId()),
+                ActionRow.of(Button.primary("trophy_detail:" + trophy.getId(), "Zurück zu Details")))
+            .build();
+    }
+
+    /**
+     * Renders the profile page without title, avatar and timestamp, so the result can be cached per user and page.
+     * {@link #withProfileHeader} adds them for the requesting message.
+     */
+    public static MessageEditData profile(String userId, Page<UserTrophy> page, int pageNumber, int totalPages) {
+        EmbedBuilder eb = new EmbedBuilder()
+            .setColor(Color.YELLOW);
+
+        if (page.isEmpty()) {
+            eb.setDescription("Dieser Spieler hat noch keine Trophäen erhalten.");
+            return new MessageEditBuilder().setEmbeds(eb.build()).setComponents().build();
+        }
+
+        StringBuilder description = new StringBuilder();
+        description.append("Hier sind die Trophäen dieses Spielers:\n\n");
+        for (UserTrophy userTrophy : page.getItems()) {
+            Trophy trophy = userTrophy.getTrophy();
+            if (trophy != null) {
+                description.append(String.format("%s **%s** (ID: %d)\n```%s```\n*Erhalten am: %s*\n\n",
+                    trophy.getEmoji(),
+                    trophy.getName(),
+                    trophy.getId(),
+                    trophy.getDescription(),
+                    userTrophy.getFormattedAwardDate()));
+            }
+        }
+        eb.setDescription(description.toString());
+        eb.setFooter("Seite " + pageNumber + "/" + totalPages);
+
+        String prefix = "trophy_profile:" + userId + ":";
+        return new MessageEditBuilder()
+            .setEmbeds(eb.build())
+            .setComponents(paginationRow(prefix, page, pageNumber, page.getFirst().getAwardId(), page.getLast().getAwardId()))
+            .build();
+    }
+
+    public static MessageEditData withProfileHeader(MessageEditData profile, String title, String thumbnailUrl) {
+        MessageEmbed embed = new EmbedBuilder(profile.getEmbeds().get(0))
+            .setTitle(title)
+            .setThumbnail(thumbnailUrl)
+            .setTimestamp(Instant.now())
+            .build();
+        return new MessageEditBuilder()
+            .setEmbeds(embed)
+            .setComponents(profile.getComponents())
+            .build();
+    }
+
+    // Zwischengespeicherte Seiten tragen keinen Zeitstempel, er wird bei jeder Auslieferung gesetzt
+    public static MessageEditData withTimestamp(MessageEditData page) {
+        MessageEmbed embed = new EmbedBuilder(page.getEmbeds().get(0))
+            .setTimestamp(Instant.now())
+            .build();
+        return new MessageEditBuilder()
+            .setEmbeds(embed)
+            .setComponents(page.getComponents())
+            .build();
+    }
+
+    public static MessageEmbed trophyDetail(Trophy trophy, Page<UserTrophy> winners,
+                                            Map<Long, MemberNameCache.MemberInfo> members) {
+        EmbedBuilder eb = new EmbedBuilder(trophy.createEmbed());
+        if (!winners.isEmpty()) {
+            StringBuilder winnersList = new StringBuilder();
+            for (UserTrophy winner : winners.getItems()) {
+                winnersList.append(userLabel(winner.getUserId(), members)).append("\n");
+            }
+            if (winners.hasNext()) {
+                winnersList.append("…");
+            }
+            eb.addField("Gewinner", winnersList.toString(), false);
+        }
+        return eb.build();
+    }
+
+    public static String leaderboard(List<TrophyStore.UserTrophyCount> leaderboard,
+                                     Map<Long, MemberNameCache.MemberInfo> members) {
+        if (leaderboard.isEmpty()) {
+            return "Noch keine Trophäen vergeben.";
+        }
+        StringBuilder desc = new StringBuilder();
+        int rank = 1;
+        for (TrophyStore.UserTrophyCount entry : leaderboard) {
+            desc.append(String.format("%d. %s - %d Trophäen\n",
+                rank++, userLabel(entry.getUserId(), members), entry.getCount()));
+        }
+        return desc.toString();
+    }
+
+    // Unbekannte Mitglieder werden weiter als Erwähnung angezeigt
+    private static String userLabel(long userId, Map<Long, MemberNameCache.MemberInfo> members) {
+        MemberNameCache.MemberInfo member = members.get(userId);
+        return member != null ? "**" + MarkdownSanitizer.escape(member.getDisplayName()) + "**" : "<@" + userId + ">";
+    }
+
+    public static int totalPages(int itemCount) {
+        return Math.max(1, (itemCount + PAGE_SIZE - 1) / PAGE_SIZE);
+    }
+
+    // Button-ID: <prefix><seite>:<p|n>:<cursor>
+    private static ActionRow paginationRow(String prefix, Page<?> page, int pageNumber, long firstKey, long lastKey) {
+        return ActionRow.of(
+            Button.primary(prefix + (pageNumber - 1) + ":p:" + firstKey, "◀️ Zurück").withDisabled(!page.hasPrevious()),
+            Button.primary(prefix + (pageNumber + 1) + ":n:" + lastKey, "Weiter ▶️").withDisabled(!page.hasNext()));
+    }
+}
@@ -0,0 +1,104 @@
+package com.amongthesloths.trophybot;
+
+import com.amongthesloths.trophybot.models.Page;
+import com.amongthesloths.trophybot.models.Trophy;
+import com.amongthesloths.trophybot.models.UserTrophy;
+import net.dv8tion.jda.api.entities.MessageEmbed;
+import net.dv8tion.jda.api.utils.messages.MessageEditData;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Loads and renders the trophy views through the {@link EmbedCache}. A cache hit skips both the database reads and
+ * the embed building; everything that depends on the requesting user (title, avatar, own rank) or on the time of the
+ * request (timestamp) is added afterwards.
+ */
+public class ViewRenderer {
+    private final TrophyStore dbManager;
+    private final EmbedCache cache;
+    private final MemberNameCache memberNames;
+
+    public ViewRenderer(TrophyStore dbManager, EmbedCache cache, MemberNameCache memberNames) {
+        this.dbManager = dbManager;
+        this.cache = cache;
+        this.memberNames = memberNames;
+    }
+
+    public MessageEmbed trophy(Trophy trophy) throws SQLException {
+        return cache.get(EmbedCache.View.TROPHY, trophy.getGuildId(), String.valueOf(trophy.getId()), "",
+            trophy::createEmbed);
+    }
+
+    public MessageEmbed trophyDetail(Trophy trophy) throws SQLException {
+        String guildId = trophy.getGuildId();
+        return cache.get(EmbedCache.View.TROPHY_DETAIL, guildId, String.valueOf(trophy.getId()), "",
+            () -> {
+                Page<UserTrophy> winners = dbManager.getTrophyWinnersPage(guildId, trophy.getId(), 0, true, TrophyViews.PAGE_SIZE);
+                return TrophyViews.trophyDetail(trophy, winners, members(guildId, winners));
+            });
+    }
+
+    /**
+     * @return the rendered page, or {@code null} if the guild has no trophies in that direction
+     */
+    public MessageEditData trophyList(String guildId, int pageNumber, boolean forward, int cursor) throws SQLException {
+        MessageEditData list = cache.get(EmbedCache.View.TROPHY_LIST, guildId, "", variant(pageNumber, forward, cursor), () -> {
+            Page<Trophy> page = dbManager.getTrophyPage(guildId, cursor, forward, TrophyViews.PAGE_SIZE);
+            if (page.isEmpty()) {
+                return null;
+            }
+            int totalPages = TrophyViews.totalPages(dbManager.getAllTrophies(guildId).size());
+            return TrophyViews.trophyList(page, pageNumber, totalPages);
+        });
+        return list != null ? TrophyViews.withTimestamp(list) : null;
+    }
+
+    public MessageEditData winners(Trophy trophy, int pageNumber, boolean forward, long cursor) throws SQLException {
+        String guildId = trophy.getGuildId();
+        MessageEditData winners = cache.get(EmbedCache.View.WINNERS, guildId, String.valueOf(trophy.getId()), variant(pageNumber, forward, cursor), () -> {
+            Page<UserTrophy> page = dbManager.getTrophyWinnersPage(guildId, trophy.getId(), cursor, forward, TrophyViews.PAGE_SIZE);
+            return TrophyViews.winners(trophy, page, pageNumber, members(guildId, page));
+        });
+        return TrophyViews.withTimestamp(winners);
+    }
+
+    public MessageEditData profile(String guildId, String userId, String title, String thumbnailUrl,
+                                   int pageNumber, boolean forward, long cursor) throws SQLException {
+        MessageEditData body = cache.get(EmbedCache.View.PROFILE, guildId, userId, variant(pageNumber, forward, cursor), () -> {
+            Page<UserTrophy> page = dbManager.getUserTrophiesPage(guildId, userId, cursor, forward, TrophyViews.PAGE_SIZE);
+            int totalPages = TrophyViews.totalPages(dbManager.getTrophyCount(guildId, userId));
+            return TrophyViews.profile(userId, page, pageNumber, totalPages);
+        });
+        return TrophyViews.withProfileHeader(body, title, thumbnailUrl);
+    }
+
+    public String leaderboard(String guildId, int limit) throws SQLException {
+        return cache.get(EmbedCache.View.LEADERBOARD, guildId, "", String.valueOf(limit), () -> {
+            List<TrophyStore.UserTrophyCount> leaderboard = dbManager.getLeaderboard(guildId, limit);
+            List<Long> userIds = new ArrayList<>(leaderboard.size());
+            for (TrophyStore.UserTrophyCount entry : leaderboard) {
+                userIds.add(entry.getUserId());
+            }
+            return TrophyViews.leaderboard(leaderboard, memberNames.resolve(guildId, userIds));
+        });
+    }
+
+    private Map<Long, MemberNameCache.MemberInfo> members(String guildId, Page<UserTrophy> page) {
+        List<Long> userIds = new ArrayList<>(page.getItems().size());
+        for (UserTrophy award : page.getItems()) {
+            userIds.add(award.getUserId());
+        }
+        return memberNames.resolve(guildId, userIds);
+    }
+
+    public EmbedCache getCache() {
+        return cache;
+    }
+
+    private static String variant(int pageNumber, boolean forward, long cursor) {
+        return pageNumber + (forward ? ":n:" : ":p:") + cursor;
+    }
+}
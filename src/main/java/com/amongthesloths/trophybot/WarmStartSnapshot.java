@@ -0,0 +1,220 @@
+package com.amongthesloths.trophybot;
+
+import com.amongthesloths.trophybot.models.Trophy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Binary copy of the in-memory state (trophy catalog and leaderboard counts) written on a clean shutdown, so the next
+ * start can skip loading it from SQLite. The snapshot records size and modification time of the database file; it is
+ * only used if the file is unchanged and has no pending WAL, i.e. nothing was written since the snapshot was taken.
+ * Format: header, trophies, counts per guild, CRC32 of everything before it; all numbers big-endian.
+ */
+public final class WarmStartSnapshot {
+    private static final Logger logger = LoggerFactory.getLogger(WarmStartSnapshot.class);
+    private static final int MAGIC = 0x54524f50;
+    private static final int FORMAT_VERSION = 1;
+
+    private final List<Trophy> trophies;
+    private final Map<String, Map<Long, Integer>> counts;
+
+    private WarmStartSnapshot(List<Trophy> trophies, Map<String, Map<Long, Integer>> counts) {
+        this.trophies = trophies;
+        this.counts = counts;
+    }
+
+    public List<Trophy> getTrophies() {
+        return trophies;
+    }
+
+    public Map<String, Map<Long, Integer>> getCounts() {
+        return counts;
+    }
+
+    /**
+     * Maps the snapshot file and reads it. Must be called before the database is opened, opening it creates a WAL.
+     *
+     * @return the snapshot, or {@code null} if there is none or it does not match the database
+     */
+    public static WarmStartSnapshot read(Path file, Path database) {
+        if (!Files.exists(file)) {
+            return null;
+        }
+        long start = System.nanoTime();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.limit() < Long.BYTES || !checksumMatches(buffer)) {
+                logger.warn("Ignoring damaged warm start snapshot {}", file);
+                return null;
+            }
+            if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION) {
+                logger.info("Ignoring warm start snapshot {} in an unknown format", file);
+                return null;
+            }
+            long size = buffer.getLong();
+            long modified = buffer.getLong();
+            if (!matches(database, size, modified)) {
+                logger.info("Database changed since the warm start snapshot was written, loading from the database");
+                return null;
+            }
+
+            int trophyCount = buffer.getInt();
+            List<Trophy> trophies = new ArrayList<>(trophyCount);
+            for (int i = 0; i < trophyCount; i++) {
+                int id = buffer.getInt();
+                String guildId = readString(buffer);
+                String name = readString(buffer);
+                String description = readString(buffer);
+                String emoji = readString(buffer);
+                LocalDateTime createdAt = readTimestamp(buffer);
+                String createdBy = readString(buffer);
+                trophies.add(new Trophy(id, guildId, name, description, emoji, createdAt, createdBy));
+            }
+
+            int guildCount = buffer.getInt();
+            Map<String, Map<Long, Integer>> counts = new HashMap<>();
+            for (int i = 0; i < guildCount; i++) {
+                String guildId = readString(buffer);
+                int users = buffer.getInt();
+                Map<Long, Integer> guildCounts = new HashMap<>(users * 4 / 3 + 1);
+                for (int j = 0; j < users; j++) {
+                    guildCounts.put(buffer.getLong(), buffer.getInt());
+                }
+                counts.put(guildId, guildCounts);
+            }
+            logger.info("Read warm start snapshot with {} trophies and {} guilds in {} ms",
+                trophies.size(), counts.size(), (System.nanoTime() - start) / 1_000_000);
+            return new WarmStartSnapshot(trophies, counts);
+        } catch (IOException | BufferUnderflowException | IllegalArgumentException e) {
+            logger.warn("Could not read warm start snapshot {}, loading from the database", file, e);
+            return null;
+        }
+    }
+
+    /**
+     * Writes the snapshot. Must be called after the database was closed, so that its file is final.
+     */
+    public static void write(Path file, Path database, List<Trophy> trophies, Map<String, Map<Long, Integer>> counts)
+            throws IOException {
+        long start = System.nanoTime();
+        if (hasPendingWal(database)) {
+            logger.warn("Database {} still has a WAL after closing, not writing a warm start snapshot", database);
+            return;
+        }
+        // Erst vollständig schreiben, dann umbenennen: ein Abbruch hinterlässt nie eine halbe Datei
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        CRC32 crc = new CRC32();
+        try (OutputStream os = Files.newOutputStream(temp);
+             BufferedOutputStream buffered = new BufferedOutputStream(os, 64 * 1024)) {
+            DataOutputStream out = new DataOutputStream(new CheckedOutputStream(buffered, crc));
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeLong(Files.size(database));
+            out.writeLong(Files.getLastModifiedTime(database).toMillis());
+
+            out.writeInt(trophies.size());
+            for (Trophy trophy : trophies) {
+                out.writeInt(trophy.getId());
+                writeString(out, trophy.getGuildId());
+                writeString(out, trophy.getName());
+                writeString(out, trophy.getDescription());
+                writeString(out, trophy.getEmoji());
+                writeTimestamp(out, trophy.getCreatedAt());
+                writeString(out, trophy.getCreatedBy());
+            }
+
+            out.writeInt(counts.size());
+            for (Map.Entry<String, Map<Long, Integer>> guild : counts.entrySet()) {
+                writeString(out, guild.getKey());
+                out.writeInt(guild.getValue().size());
+                for (Map.Entry<Long, Integer> entry : guild.getValue().entrySet()) {
+                    out.writeLong(entry.getKey());
+                    out.writeInt(entry.getValue());
+                }
+            }
+            out.flush();
+            // Die Prüfsumme selbst zählt nicht mit
+            new DataOutputStream(buffered).writeLong(crc.getValue());
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        logger.info("Wrote warm start snapshot with {} trophies and {} guilds ({} bytes) in {} ms",
+            trophies.size(), counts.size(), Files.size(file), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private static boolean matches(Path database, long size, long modified) throws IOException {
+        return Files.exists(database)
+            && !hasPendingWal(database)
+            && Files.size(database) == size
+            && Files.getLastModifiedTime(database).toMillis() == modified;
+    }
+
+    // Nach einem Absturz liegen die letzten Commits noch im WAL und nicht in der Datenbankdatei
+    private static boolean hasPendingWal(Path database) throws IOException {
+        Path wal = database.resolveSibling(database.getFileName() + "-wal");
+        return Files.exists(wal) && Files.size(wal) > 0;
+    }
+
+    private static boolean checksumMatches(ByteBuffer buffer) {
+        int payload = buffer.limit() - Long.BYTES;
+        CRC32 crc = new CRC32();
+        crc.update(buffer.duplicate().limit(payload));
+        return crc.getValue() == buffer.getLong(payload);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeTimestamp(DataOutputStream out, LocalDateTime value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeLong(value.toEpochSecond(ZoneOffset.UTC));
+            out.writeInt(value.getNano());
+        }
+    }
+
+    private static LocalDateTime readTimestamp(ByteBuffer buffer) {
+        if (buffer.get() == 0) {
+            return null;
+        }
+        return LocalDateTime.ofEpochSecond(buffer.getLong(), buffer.getInt(), ZoneOffset.UTC);
+    }
+}
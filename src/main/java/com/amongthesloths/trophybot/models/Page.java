@@ -0,0 +1,59 @@
+package com.amongthesloths.trophybot.models;
+
+import java.util.List;
+
+public class Page<T> {
+    private final List<T> items;
+    private final boolean hasPrevious;
+    private final boolean hasNext;
+
+    public Page(List<T> items, boolean hasPrevious, boolean hasNext) {
+        this.items = items;
+        this.hasPrevious = hasPrevious;
+        this.hasNext = hasNext;
+    }
+
+    /**
+     * Builds a page from rows fetched with limit + 1 in the direction of travel. The extra row only signals that
+     * there is more data in that direction and is dropped. Rows of a backwards fetch must already be in display order.
+     */
+    public static <T> Page<T> fromSeek(List<T> rows, int limit, boolean forward, boolean hasCursor) {
+        boolean hasMore = rows.size() > limit;
+        List<T> items;
+        if (!hasMore) {
+            items = rows;
+        } else if (forward) {
+            items = rows.subList(0, limit);
+        } else {
+            items = rows.subList(rows.size() - limit, rows.size());
+        }
+        if (forward) {
+            return new Page<>(List.copyOf(items), hasCursor, hasMore);
+        }
+        return new Page<>(List.copyOf(items), hasMore, hasCursor);
+    }
+
+    public List<T> getItems() {
+        return items;
+    }
+
+    public boolean isEmpty() {
+        return items.isEmpty();
+    }
+
+    public boolean hasPrevious() {
+        return hasPrevious;
+    }
+
+    public boolean hasNext() {
+        return hasNext;
+    }
+
+    public T getFirst() {
+        return items.get(0);
+    }
+
+    public T getLast() {
+        return items.get(items.size() - 1);
+    }
+}
@@ -7,14 +7,16 @@ import java.time.LocalDateTime;
 
 public class Trophy {
     private int id;
+    private String guildId;
     private String name;
     private String description;
     private String emoji;
     private LocalDateTime createdAt;
     private String createdBy;
 
-    public Trophy(int id, String name, String description, String emoji, LocalDateTime createdAt, String createdBy) {
+    public Trophy(int id, String guildId, String name, String description, String emoji, LocalDateTime createdAt, String createdBy) {
         this.id = id;
+        this.guildId = guildId;
         this.name = name;
         this.description = description;
         this.emoji = emoji;
@@ -31,6 +33,14 @@ public class Trophy {
         this.id = id;
     }
 
+    public String getGuildId() {
+        return guildId;
+    }
+
+    public void setGuildId(String guildId) {
+        this.guildId = guildId;
+    }
+
     public String getName() {
         return name;
     }
@@ -1,90 +1,66 @@
 package com.amongthesloths.trophybot.models;
 
-import java.sql.Timestamp;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
 
+/**
+ * One award row. Ids are kept as primitives and the trophy is the shared instance from the catalog, so large result
+ * sets only allocate this object per row.
+ */
 public class UserTrophy {
-    private long userId;
-    private String username;
-    private int trophyId;
-    private LocalDateTime awardedAt;
-    private long awardedBy;
-    private Trophy trophy;
-    private Timestamp awardDate;
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("dd.MM.yyyy HH:mm");
+    public static final long UNKNOWN_DATE = Long.MIN_VALUE;
 
-    public UserTrophy(long userId, String username, int trophyId, LocalDateTime awardedAt, long awardedBy) {
+    private final long awardId;
+    private final long userId;
+    private final Trophy trophy;
+    private final long awardedAt;
+    private final long awardedBy;
+
+    public UserTrophy(long awardId, long userId, Trophy trophy, long awardedAtMillis, long awardedBy) {
+        this.awardId = awardId;
         this.userId = userId;
-        this.username = username;
-        this.trophyId = trophyId;
-        this.awardedAt = awardedAt;
+        this.trophy = trophy;
+        this.awardedAt = awardedAtMillis;
         this.awardedBy = awardedBy;
     }
 
-    public UserTrophy(Trophy trophy, Timestamp awardDate, String awardedBy) {
-        this.trophy = trophy;
-        this.awardDate = awardDate;
-        this.awardedBy = Long.parseLong(awardedBy);
+    public long getAwardId() {
+        return awardId;
     }
 
-    // Getters and Setters
     public long getUserId() {
         return userId;
     }
 
-    public void setUserId(long userId) {
-        this.userId = userId;
-    }
-
-    public String getUsername() {
-        return username;
-    }
-
-    public void setUsername(String username) {
-        this.username = username;
+    public Trophy getTrophy() {
+        return trophy;
     }
 
     public int getTrophyId() {
-        return trophyId;
+        return trophy.getId();
     }
 
-    public void setTrophyId(int trophyId) {
-        this.trophyId = trophyId;
-    }
-
-    public LocalDateTime getAwardedAt() {
+    /**
+     * @return award time in epoch milliseconds, or {@link #UNKNOWN_DATE}
+     */
+    public long getAwardedAtMillis() {
         return awardedAt;
     }
 
-    public void setAwardedAt(LocalDateTime awardedAt) {
-        this.awardedAt = awardedAt;
+    public LocalDateTime getAwardedAt() {
+        if (awardedAt == UNKNOWN_DATE) return null;
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(awardedAt), ZoneId.systemDefault());
     }
 
     public long getAwardedBy() {
         return awardedBy;
     }
 
-    public void setAwardedBy(long awardedBy) {
-        this.awardedBy = awardedBy;
-    }
-
-    public Trophy getTrophy() {
-        return trophy;
-    }
-
-    public void setTrophy(Trophy trophy) {
-        this.trophy = trophy;
-    }
-
-    public Timestamp getAwardDate() {
-        return awardDate;
-    }
-
-    public void setAwardDate(Timestamp awardDate) {
-        this.awardDate = awardDate;
-    }
-
     public String getFormattedAwardDate() {
-        if (awardDate == null) return "Unbekannt";
-        return awardDate.toLocalDateTime().format(java.time.format.DateTimeFormatter.ofPattern("dd.MM.yyyy HH:mm"));
+        if (awardedAt == UNKNOWN_DATE) return "Unbekannt";
+        return getAwardedAt().format(DATE_FORMAT);
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,60 @@
+-- Trophies table
+CREATE TABLE IF NOT EXISTS trophies (
+    id INTEGER PRIMARY KEY AUTOINCREMENT,
+    guild_id TEXT NOT NULL,
+    name TEXT NOT NULL,
+    description TEXT,
+    emoji TEXT,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    created_by TEXT NOT NULL
+);
+
+-- Trophy awards table
+CREATE TABLE IF NOT EXISTS trophy_awards (
+    id INTEGER PRIMARY KEY AUTOINCREMENT,
+    guild_id TEXT NOT NULL,
+    trophy_id INTEGER NOT NULL,
+    user_id TEXT NOT NULL,
+    awarded_by TEXT NOT NULL,
+    awarded_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    FOREIGN KEY (trophy_id) REFERENCES trophies(id)
+);
+
+-- Create indexes, every lookup is scoped to one guild
+DROP INDEX IF EXISTS idx_trophy_awards_user;
+DROP INDEX IF EXISTS idx_trophy_awards_trophy;
+CREATE INDEX IF NOT EXISTS idx_trophies_guild ON trophies(guild_id, id);
+CREATE INDEX IF NOT EXISTS idx_trophy_awards_guild_user ON trophy_awards(guild_id, user_id);
+CREATE INDEX IF NOT EXISTS idx_trophy_awards_guild_trophy ON trophy_awards(guild_id, trophy_id);
+CREATE INDEX IF NOT EXISTS idx_trophy_awards_guild ON trophy_awards(guild_id);
+
+-- Per-user trophy counts per guild, maintained together with trophy_awards
+CREATE TABLE IF NOT EXISTS user_trophy_counts (
+    guild_id TEXT NOT NULL,
+    user_id TEXT NOT NULL,
+    trophy_count INTEGER NOT NULL DEFAULT 0,
+    PRIMARY KEY (guild_id, user_id)
+);
+
+DROP INDEX IF EXISTS idx_user_trophy_counts_count;
+CREATE INDEX IF NOT EXISTS idx_user_trophy_counts_guild_count ON user_trophy_counts(guild_id, trophy_count DESC);
+
+-- Finished seasons and their archived awards, written by /admin reset
+CREATE TABLE IF NOT EXISTS seasons (
+    id INTEGER PRIMARY KEY AUTOINCREMENT,
+    guild_id TEXT NOT NULL,
+    ended_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    ended_by TEXT NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS trophy_awards_archive (
+    season_id INTEGER NOT NULL,
+    award_id INTEGER NOT NULL,
+    guild_id TEXT NOT NULL,
+    trophy_id INTEGER NOT NULL,
+    user_id TEXT NOT NULL,
+    awarded_by TEXT NOT NULL,
+    awarded_at TIMESTAMP,
+    PRIMARY KEY (season_id, award_id),
+    FOREIGN KEY (season_id) REFERENCES seasons(id)
+);
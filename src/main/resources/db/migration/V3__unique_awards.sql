@@ -0,0 +1,12 @@
+-- Doppelte Vergaben entfernen, die älteste bleibt erhalten
+DELETE FROM trophy_awards
+WHERE id NOT IN (SELECT MIN(id) FROM trophy_awards GROUP BY guild_id, user_id, trophy_id);
+
+-- Zählung für das Leaderboard passend zu den bereinigten Vergaben neu berechnen
+DELETE FROM user_trophy_counts;
+INSERT INTO user_trophy_counts (guild_id, user_id, trophy_count)
+SELECT guild_id, user_id, COUNT(*) FROM trophy_awards GROUP BY guild_id, user_id;
+
+-- Jede Trophäe höchstens einmal pro Benutzer und Server, deckt auch Abfragen nach (guild_id, user_id) ab
+CREATE UNIQUE INDEX IF NOT EXISTS idx_trophy_awards_unique ON trophy_awards(guild_id, user_id, trophy_id);
+DROP INDEX IF EXISTS idx_trophy_awards_guild_user;
@@ -0,0 +1,3 @@
+-- V3 hat diesen Index entfernt, der eindeutige Index liefert die Vergaben eines Benutzers aber nicht nach id sortiert.
+-- Über die angehängte rowid kann die Profil-Seite hier direkt ab dem Cursor lesen (nur limit + 1 Zeilen)
+CREATE INDEX IF NOT EXISTS idx_trophy_awards_guild_user ON trophy_awards(guild_id, user_id);
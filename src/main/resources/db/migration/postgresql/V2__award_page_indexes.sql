@@ -0,0 +1,4 @@
+-- Seiten von Profil und Gewinnerliste lesen nach id ab dem Cursor, ohne die id im Index müsste sortiert werden
+CREATE INDEX IF NOT EXISTS idx_trophy_awards_guild_user_id ON trophy_awards(guild_id, user_id, id);
+CREATE INDEX IF NOT EXISTS idx_trophy_awards_guild_trophy_id ON trophy_awards(guild_id, trophy_id, id);
+DROP INDEX IF EXISTS idx_trophy_awards_guild_trophy;